@@ -0,0 +1,42 @@
+package com.nitnelave.CreeperHeal.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks, always with the GC profiler, so that the bytes
+ * allocated by every operation are reported next to its time. The arguments
+ * are the ones of JMH.
+ *
+ * @author nitnelave
+ *
+ */
+public class Benchmarks
+{
+
+    /**
+     * Run the benchmarks.
+     *
+     * @param args
+     *            The JMH arguments, for instance the regular expression of
+     *            the benchmarks to run.
+     * @throws Exception
+     *             If the arguments are wrong, or a benchmark failed.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        try
+        {
+            new Runner(new OptionsBuilder().parent(cmd).addProfiler(GCProfiler.class).build()).run();
+        } catch (RunnerException e)
+        {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.nitnelave.CreeperHeal.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import com.nitnelave.CreeperHeal.headless.MemoryWorld;
+
+/**
+ * A cube of blocks in a memory world, of the size of an explosion: mostly
+ * stone, with a tenth of torches standing on the block below, and a tenth of
+ * sand, so that the dependent and falling blocks take their own paths. The
+ * blocks are listed in a shuffled order, like the block lists of the
+ * explosions.
+ *
+ * @author nitnelave
+ *
+ */
+public class Scene
+{
+
+    private final MemoryWorld memory;
+    private final int[] x, y, z, ids;
+    private final byte[] data;
+    private final List<Block> blocks;
+    private final Location center;
+
+    /**
+     * Build the list of the blocks of the scene. The world is not changed
+     * until the scene is filled.
+     *
+     * @param memory
+     *            The world of the scene.
+     * @param size
+     *            The number of blocks.
+     * @param originX
+     *            The x coordinate of the corner of the cube.
+     * @param originZ
+     *            The z coordinate of the corner of the cube.
+     */
+    public Scene(MemoryWorld memory, int size, int originX, int originZ)
+    {
+        this.memory = memory;
+        World world = memory.as(World.class);
+        int side = (int) Math.ceil(Math.cbrt(size));
+        x = new int[size];
+        y = new int[size];
+        z = new int[size];
+        ids = new int[size];
+        data = new byte[size];
+        List<Integer> order = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++)
+        {
+            x[i] = originX + i % side;
+            z[i] = originZ + i / side % side;
+            y[i] = 64 + i / (side * side);
+            if (i % 10 == 0 && y[i] > 64)
+            {
+                ids[i] = Material.TORCH.getId();
+                data[i] = 5;
+            }
+            else if (i % 10 == 1 && y[i] > 64)
+                ids[i] = Material.SAND.getId();
+            else
+                ids[i] = Material.STONE.getId();
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(size));
+        blocks = new ArrayList<Block>(size);
+        for (int i : order)
+            blocks.add(world.getBlockAt(x[i], y[i], z[i]));
+        center = new Location(world, originX + side / 2 + 0.5, 64 + side / 2 + 0.5, originZ + side / 2 + 0.5);
+    }
+
+    /**
+     * Place the blocks of the scene in the world.
+     */
+    public void fill()
+    {
+        for (int i = 0; i < ids.length; i++)
+            memory.set(x[i], y[i], z[i], ids[i], data[i]);
+    }
+
+    /**
+     * Replace the blocks of the scene with air.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < ids.length; i++)
+            memory.set(x[i], y[i], z[i], 0, (byte) 0);
+    }
+
+    /**
+     * Get the blocks of the scene, shuffled.
+     *
+     * @return The blocks.
+     */
+    public List<Block> getBlocks()
+    {
+        return blocks;
+    }
+
+    /**
+     * Get the center of the cube.
+     *
+     * @return The center.
+     */
+    public Location getCenter()
+    {
+        return center.clone();
+    }
+
+}
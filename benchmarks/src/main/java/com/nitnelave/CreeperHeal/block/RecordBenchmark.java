@@ -0,0 +1,71 @@
+package com.nitnelave.CreeperHeal.block;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nitnelave.CreeperHeal.bench.Scene;
+import com.nitnelave.CreeperHeal.headless.HeadlessServer;
+
+/**
+ * The recording of an explosion: the capture of the blocks, their removal
+ * from the world, and the sort of the heal order, all in the tick of the
+ * explosion.
+ *
+ * @author nitnelave
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordBenchmark
+{
+
+    @Param({ "10", "100", "1000", "10000", "50000" })
+    private int size;
+
+    private Scene scene;
+    private List<Block> blocks;
+    private Location center;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        HeadlessServer server = HeadlessServer.get();
+        scene = new Scene(server.createWorld("record"), size, 0, 0);
+        blocks = scene.getBlocks();
+        center = scene.getCenter();
+    }
+
+    @Setup(Level.Invocation)
+    public void fill()
+    {
+        scene.fill();
+    }
+
+    @Benchmark
+    public CreeperExplosion record()
+    {
+        CreeperExplosion ex = new CreeperExplosion(center);
+        ex.addBlocks(blocks, center);
+        return ex;
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.nitnelave.CreeperHeal.block;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.block.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nitnelave.CreeperHeal.bench.Scene;
+import com.nitnelave.CreeperHeal.headless.HeadlessServer;
+
+/**
+ * The replacement of the blocks of an explosion, in the heal order, in a
+ * world where they were removed.
+ *
+ * @author nitnelave
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplaceBenchmark
+{
+
+    @Param({ "10", "100", "1000", "10000", "50000" })
+    private int size;
+
+    private Scene scene;
+    private CreeperBlock[] blocks;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        scene = new Scene(HeadlessServer.get().createWorld("replace"), size, 0, 0);
+        scene.fill();
+        CreeperComparator comparator = new CreeperComparator(scene.getCenter());
+        blocks = new CreeperBlock[size];
+        int i = 0;
+        for (Block b : scene.getBlocks())
+            blocks[i++] = CreeperBlock.newBlock(b.getState());
+        Arrays.sort(blocks, comparator);
+    }
+
+    @Setup(Level.Invocation)
+    public void clear()
+    {
+        scene.clear();
+    }
+
+    @Benchmark
+    public int replace()
+    {
+        int replaced = 0;
+        for (CreeperBlock b : blocks)
+            if (b.replace(false))
+                replaced++;
+        return replaced;
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.nitnelave.CreeperHeal.block;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nitnelave.CreeperHeal.bench.Scene;
+import com.nitnelave.CreeperHeal.headless.HeadlessServer;
+
+/**
+ * The sort of the blocks of an explosion in the heal order: with the
+ * comparator, which computes both keys at every comparison, and with the keys
+ * computed once per block beforehand, as the explosions do.
+ *
+ * @author nitnelave
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortBenchmark
+{
+
+    @Param({ "10", "100", "1000", "10000", "50000" })
+    private int size;
+
+    private CreeperComparator comparator;
+    private Replaceable[] captured;
+    private Replaceable[] blocks;
+
+    /*
+     * A block and its key, like the sorted blocks of the explosions.
+     */
+    private static class Keyed implements Comparable<Keyed>
+    {
+        private final long key;
+        private final Replaceable block;
+
+        private Keyed(long key, Replaceable block)
+        {
+            this.key = key;
+            this.block = block;
+        }
+
+        @Override
+        public int compareTo(Keyed o)
+        {
+            if (key < o.key)
+                return -1;
+            else if (key > o.key)
+                return 1;
+            return 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Scene scene = new Scene(HeadlessServer.get().createWorld("sort"), size, 0, 0);
+        scene.fill();
+        Location center = scene.getCenter();
+        comparator = new CreeperComparator(center);
+        captured = new Replaceable[size];
+        int i = 0;
+        for (Block b : scene.getBlocks())
+            captured[i++] = CreeperBlock.newBlock(b.getState());
+        blocks = new Replaceable[size];
+    }
+
+    @Setup(Level.Invocation)
+    public void shuffle()
+    {
+        System.arraycopy(captured, 0, blocks, 0, size);
+    }
+
+    @Benchmark
+    public Replaceable[] comparator()
+    {
+        Arrays.sort(blocks, comparator);
+        return blocks;
+    }
+
+    @Benchmark
+    public Object[] keys()
+    {
+        Keyed[] sorted = new Keyed[size];
+        for (int i = 0; i < size; i++)
+            sorted[i] = new Keyed(comparator.getKey(blocks[i]), blocks[i]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.nitnelave.CreeperHeal.config;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nitnelave.CreeperHeal.block.BlockId;
+import com.nitnelave.CreeperHeal.headless.HeadlessServer;
+
+/**
+ * The lookup of a block in the blacklist of a world, done for every block of
+ * every explosion, against the set of block ids it is built from.
+ *
+ * @author nitnelave
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockIdBenchmark
+{
+
+    private static final int QUERIES = 4096;
+
+    private WorldConfig world;
+    private final HashSet<BlockId> set = new HashSet<BlockId>();
+    private int[] ids;
+    private byte[] data;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        HeadlessServer.get().createWorld("blockid");
+        world = CreeperConfig.getWorld("blockid");
+        for (int id = 1; id < 256; id += 7)
+            set.add(new BlockId(id));
+        for (int d = 0; d < 16; d += 3)
+            set.add(new BlockId(35, (byte) d));
+        world.setList(WCfgVal.REPLACE_BLACK_LIST, set);
+        Random random = new Random(0);
+        ids = new int[QUERIES];
+        data = new byte[QUERIES];
+        for (int i = 0; i < QUERIES; i++)
+        {
+            ids[i] = random.nextInt(256);
+            data[i] = (byte) random.nextInt(16);
+        }
+    }
+
+    @Benchmark
+    public boolean blackList()
+    {
+        next = (next + 1) % QUERIES;
+        return world.isBlackListed(ids[next], data[next]);
+    }
+
+    @Benchmark
+    public boolean hashSet()
+    {
+        next = (next + 1) % QUERIES;
+        int id = ids[next];
+        return set.contains(new BlockId(id)) || set.contains(new BlockId(id, data[next]));
+    }
+
+}
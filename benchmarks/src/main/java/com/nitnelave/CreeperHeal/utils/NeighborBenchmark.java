@@ -0,0 +1,81 @@
+package com.nitnelave.CreeperHeal.utils;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nitnelave.CreeperHeal.block.CreeperExplosion;
+import com.nitnelave.CreeperHeal.headless.HeadlessServer;
+import com.nitnelave.CreeperHeal.headless.MemoryWorld;
+
+/**
+ * The search of the explosion next to a location, among explosions spread
+ * over a square of a thousand blocks, as done for every block broken or
+ * placed next to an explosion.
+ *
+ * @author nitnelave
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeighborBenchmark
+{
+
+    private static final int SPREAD = 1000;
+    private static final int QUERIES = 1024;
+
+    @Param({ "10", "100", "1000", "10000", "50000" })
+    private int size;
+
+    private final NeighborExplosion index = new NeighborExplosion();
+    private Location[] queries;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        MemoryWorld memory = HeadlessServer.get().createWorld("neighbor");
+        World world = memory.as(World.class);
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++)
+        {
+            int x = random.nextInt(SPREAD), z = random.nextInt(SPREAD);
+            memory.set(x, 64, z, Material.STONE.getId(), (byte) 0);
+            Location loc = new Location(world, x + 0.5, 64.5, z + 0.5);
+            CreeperExplosion ex = new CreeperExplosion(loc);
+            ex.addBlocks(Collections.singletonList(world.getBlockAt(x, 64, z)), loc);
+            index.addElement(ex);
+        }
+        queries = new Location[QUERIES];
+        for (int i = 0; i < QUERIES; i++)
+            queries[i] = new Location(world, random.nextInt(SPREAD), 64, random.nextInt(SPREAD));
+    }
+
+    @Benchmark
+    public CreeperExplosion getNeighbor()
+    {
+        next = (next + 1) % QUERIES;
+        return index.getNeighbor(queries[next]);
+    }
+
+}
@@ -2,13 +2,21 @@ package com.nitnelave.CreeperHeal;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
 
-import org.bukkit.Bukkit;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
 import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredListener;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import com.nitnelave.CreeperHeal.block.BurntBlockManager;
 import com.nitnelave.CreeperHeal.block.ExplodedBlockManager;
+import com.nitnelave.CreeperHeal.block.HealJournal;
+import com.nitnelave.CreeperHeal.block.HealTrace;
 import com.nitnelave.CreeperHeal.command.CreeperCommandManager;
 import com.nitnelave.CreeperHeal.config.CfgVal;
 import com.nitnelave.CreeperHeal.config.CreeperConfig;
@@ -19,7 +27,10 @@ import com.nitnelave.CreeperHeal.listeners.CreeperListener;
 import com.nitnelave.CreeperHeal.listeners.GriefListener;
 import com.nitnelave.CreeperHeal.listeners.LeavesListener;
 import com.nitnelave.CreeperHeal.listeners.RailsUpdateListener;
+import com.nitnelave.CreeperHeal.listeners.WorldListener;
+import com.nitnelave.CreeperHeal.utils.CreeperClock;
 import com.nitnelave.CreeperHeal.utils.CreeperLog;
+import com.nitnelave.CreeperHeal.utils.CreeperStats;
 import com.nitnelave.CreeperHeal.utils.MetricsLite;
 
 /**
@@ -40,6 +51,11 @@ public class CreeperHeal extends JavaPlugin
      */
     private static boolean griefRegistered = false;
 
+    /*
+     * The data folder used when the plugin is driven without a server.
+     */
+    private static File headlessFolder = null;
+
     /*
      * (non-Javadoc)
      * 
@@ -67,25 +83,57 @@ public class CreeperHeal extends JavaPlugin
      */
     private void registerEvents()
     {
-        PluginManager pm = getServer().getPluginManager();
-
-        pm.registerEvents(new CreeperListener(), this);
-        pm.registerEvents(new CreeperBlockListener(), this);
+        registerListener(new CreeperListener());
+        registerListener(new CreeperBlockListener());
 
         if (CreeperConfig.getBool(CfgVal.LEAVES_VINES))
-            pm.registerEvents(new LeavesListener(), this);
+            registerListener(new LeavesListener());
 
         if (CreeperConfig.getBool(CfgVal.PREVENT_BLOCK_FALL))
-            pm.registerEvents(new BlockFallListener(), this);
+            registerListener(new BlockFallListener());
 
         if (CreeperConfig.getBool(CfgVal.RAIL_REPLACEMENT))
-            pm.registerEvents(new RailsUpdateListener(), this);
+            registerListener(new RailsUpdateListener());
 
         if (CreeperConfig.getInt(CfgVal.WAIT_BEFORE_BURN_AGAIN) > 0)
-            pm.registerEvents(new BlockIgniteListener(), this);
+            registerListener(new BlockIgniteListener());
 
+        registerListener(new WorldListener());
+
+        CreeperClock.init();
         ExplodedBlockManager.init();
         BurntBlockManager.init();
+        HealJournal.init();
+        CreeperStats.init();
+    }
+
+    /*
+     * Register the handlers of the listener. If stats-time-listeners is set,
+     * the time spent in each of them is measured. The handlers are then found
+     * by Bukkit, so the priorities and ignoreCancelled flags of the
+     * annotations are kept.
+     */
+    private void registerListener(final Listener listener)
+    {
+        PluginManager pm = getServer().getPluginManager();
+        if (!CreeperConfig.getBool(CfgVal.STATS_TIME_LISTENERS))
+        {
+            pm.registerEvents(listener, this);
+            return;
+        }
+        final CreeperStats.Timer timer = CreeperStats.getListenerTimer(listener.getClass().getSimpleName());
+        for (Map.Entry<Class<? extends Event>, Set<RegisteredListener>> entry : getPluginLoader().createRegisteredListeners(listener, this).entrySet())
+            for (final RegisteredListener handler : entry.getValue())
+                pm.registerEvent(entry.getKey(), listener, handler.getPriority(), new EventExecutor()
+                {
+                    @Override
+                    public void execute(Listener l, Event event) throws EventException
+                    {
+                        long start = System.nanoTime();
+                        handler.callEvent(event);
+                        timer.record(System.nanoTime() - start);
+                    }
+                }, this, handler.isIgnoringCancelled());
     }
 
     /*
@@ -98,6 +146,9 @@ public class CreeperHeal extends JavaPlugin
     {
         ExplodedBlockManager.forceReplace(); //replace blocks still in memory, so they are not lost
         BurntBlockManager.forceReplaceBurnt(); //same for burnt_blocks
+        HealTrace.stop();
+        HealJournal.close();
+        CreeperLog.close();
     }
 
     /**
@@ -115,9 +166,9 @@ public class CreeperHeal extends JavaPlugin
      */
     public static void registerGriefEvents()
     {
-        if (!griefRegistered)
+        if (!griefRegistered && instance != null)
         {
-            Bukkit.getServer().getPluginManager().registerEvents(new GriefListener(), getInstance());
+            getInstance().registerListener(new GriefListener());
             griefRegistered = true;
         }
     }
@@ -129,7 +180,20 @@ public class CreeperHeal extends JavaPlugin
      */
     public static File getCHFolder()
     {
-        return getInstance().getDataFolder();
+        return instance == null ? headlessFolder : instance.getDataFolder();
+    }
+
+    /**
+     * Set the data folder to use when the plugin is not loaded by a server,
+     * for instance when the managers are driven by the test harness. It must
+     * be set before the config is loaded.
+     * 
+     * @param folder
+     *            The data folder.
+     */
+    public static void setCHFolder(File folder)
+    {
+        headlessFolder = folder;
     }
 
 }
\ No newline at end of file
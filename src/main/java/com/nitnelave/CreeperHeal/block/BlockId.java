@@ -3,7 +3,10 @@ package com.nitnelave.CreeperHeal.block;
 import org.bukkit.block.Block;
 
 /**
- * A utility class to represent a block type along with optional data.
+ * A utility class to represent a block type along with optional data. Two
+ * BlockIds are equal only if they have the same id and the same data, or both
+ * no data: whether an id without data matches a block is decided by the list
+ * it is in.
  * 
  * @author nitnelave
  * 
@@ -158,13 +161,7 @@ public class BlockId
             return false;
 
         BlockId block = (BlockId) obj;
-        if (block.id != id)
-            return false;
-        //same id
-        if (!(block.hasData && hasData))
-            return true;
-        //both have data
-        return block.data == data;
+        return block.id == id && block.hasData == hasData && (!hasData || block.data == data);
     }
 
     /*
@@ -1,6 +1,5 @@
 package com.nitnelave.CreeperHeal.block;
 
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -12,10 +11,12 @@ import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 
-import com.nitnelave.CreeperHeal.CreeperHeal;
 import com.nitnelave.CreeperHeal.config.CfgVal;
 import com.nitnelave.CreeperHeal.config.CreeperConfig;
 import com.nitnelave.CreeperHeal.config.WorldConfig;
+import com.nitnelave.CreeperHeal.utils.CreeperClock;
+import com.nitnelave.CreeperHeal.utils.CreeperScheduler;
+import com.nitnelave.CreeperHeal.utils.CreeperStats;
 import com.nitnelave.CreeperHeal.utils.NeighborFire;
 
 /**
@@ -35,7 +36,7 @@ public abstract class BurntBlockManager
      * If the plugin is not in lightweight mode, the list of recently burnt
      * blocks to prevent them from burning again soon.
      */
-    private static Map<Location, Date> recentlyBurnt;
+    private static Map<Location, Long> recentlyBurnt;
     /*
      * If the leaves replacement setting is on, the list of recently burnt
      * blocks for neighbor finding.
@@ -45,11 +46,11 @@ public abstract class BurntBlockManager
     public static void init()
     {
         if (CreeperConfig.getInt(CfgVal.WAIT_BEFORE_BURN_AGAIN) > 0)
-            recentlyBurnt = new HashMap<Location, Date>();
+            recentlyBurnt = new HashMap<Location, Long>();
         if (CreeperConfig.getBool(CfgVal.LEAVES_VINES))
             fireIndex = new NeighborFire();
 
-        Bukkit.getScheduler().scheduleSyncRepeatingTask(CreeperHeal.getInstance(), new Runnable()
+        CreeperScheduler.runTaskTimer(new Runnable()
         {
             @Override
             public void run()
@@ -58,12 +59,14 @@ public abstract class BurntBlockManager
             }
         }, 300, 7200);
 
-        Bukkit.getScheduler().runTaskTimer(CreeperHeal.getInstance(), new Runnable()
+        CreeperScheduler.runTaskTimer(new Runnable()
         {
             @Override
             public void run()
             {
+                long start = System.nanoTime();
                 replaceBurnt();
+                CreeperStats.BURNT.record(System.nanoTime() - start);
             }
         }, 0, 20);
 
@@ -81,7 +84,7 @@ public abstract class BurntBlockManager
 
         Iterator<CreeperBurntBlock> iter = burntList.iterator();
         int d = CreeperConfig.getInt(CfgVal.WAIT_BEFORE_BURN_AGAIN);
-        Date time = new Date(new Date().getTime() + 1000 * d);
+        long time = CreeperClock.now() + 1000L * d;
         while (iter.hasNext())
         {
             CreeperBurntBlock cBlock = iter.next();
@@ -104,7 +107,7 @@ public abstract class BurntBlockManager
     {
         Iterator<CreeperBurntBlock> iter = burntList.iterator();
         int d = CreeperConfig.getInt(CfgVal.WAIT_BEFORE_BURN_AGAIN);
-        Date time = new Date(new Date().getTime() + 1000 * d);
+        long time = CreeperClock.now() + 1000L * d;
         while (iter.hasNext())
             iter.next().replace(true);
         if (d > 0)
@@ -125,7 +128,7 @@ public abstract class BurntBlockManager
     {
 
         int d = CreeperConfig.getInt(CfgVal.WAIT_BEFORE_BURN_AGAIN);
-        Date time = new Date(new Date().getTime() + 1000 * d);
+        long time = CreeperClock.now() + 1000L * d;
         Iterator<CreeperBurntBlock> iter = burntList.iterator();
         while (iter.hasNext())
         {
@@ -146,6 +149,27 @@ public abstract class BurntBlockManager
         }
     }
 
+    /**
+     * Count the burnt blocks waiting to be replaced in each world.
+     * 
+     * @param counts
+     *            The map to fill, with the number of blocks by world name.
+     */
+    public static void countPending(Map<String, int[]> counts)
+    {
+        for (CreeperBurntBlock b : burntList)
+        {
+            String name = b.getWorld().getName();
+            int[] c = counts.get(name);
+            if (c == null)
+            {
+                c = new int[1];
+                counts.put(name, c);
+            }
+            c[0]++;
+        }
+    }
+
     /**
      * Record a burnt block.
      * 
@@ -160,8 +184,8 @@ public abstract class BurntBlockManager
 
         for (NeighborBlock neighbor : b.getDependentNeighbors())
             if (neighbor.isNeighbor())
-                recordBurntBlock(new CreeperBurntBlock(new Date(new Date().getTime() + 100), neighbor.getBlock().getState()));
-        recordBurntBlock(new CreeperBurntBlock(new Date(), b));
+                recordBurntBlock(new CreeperBurntBlock(CreeperClock.now() + 100, neighbor.getBlock().getState()));
+        recordBurntBlock(new CreeperBurntBlock(CreeperClock.now(), b));
     }
 
     /**
@@ -176,12 +200,36 @@ public abstract class BurntBlockManager
         if (block.getBlock() != null)
         {
             burntList.add(block);
+            CreeperStats.RECORDED.increment();
+            HealJournal.logRecord(block.getBlock());
             if (CreeperConfig.getBool(CfgVal.LEAVES_VINES))
                 fireIndex.addElement(block);
             block.remove();
         }
     }
 
+    /*
+     * Put the sizes of the lists and indexes in the map, by name.
+     */
+    static void collectSizes(Map<String, Integer> sizes)
+    {
+        sizes.put("burnt blocks", burntList.size());
+        if (recentlyBurnt != null)
+            sizes.put("recently burnt", recentlyBurnt.size());
+        if (fireIndex != null)
+            sizes.put("fire index", fireIndex.size());
+    }
+
+    /*
+     * Add all the blocks waiting to be replaced to the list.
+     */
+    static void collectPending(List<Replaceable> list)
+    {
+        for (CreeperBurntBlock b : burntList)
+            if (!b.wasReplaced())
+                list.add(b.getBlock());
+    }
+
     /**
      * Get whether the location is close to a recently burnt block.
      * 
@@ -219,29 +267,25 @@ public abstract class BurntBlockManager
     {
         if (CreeperConfig.getInt(CfgVal.WAIT_BEFORE_BURN_AGAIN) <= 0)
             return false;
-        Date d = recentlyBurnt.get(block.getLocation());
-        return d != null && d.after(new Date());
+        Long d = recentlyBurnt.get(block.getLocation());
+        return d != null && d > CreeperClock.now();
     }
 
     /**
      * Clean up the block lists, remove the useless blocks. Do not use when in
      * light weight mode.
      */
-    private static void cleanUp()
+    static void cleanUp()
     {
         if (CreeperConfig.getBool(CfgVal.LEAVES_VINES))
             fireIndex.clean();
         if (CreeperConfig.getInt(CfgVal.WAIT_BEFORE_BURN_AGAIN) > 0)
         {
-            Iterator<Location> iter = recentlyBurnt.keySet().iterator();
-            Date now = new Date();
+            long now = CreeperClock.now();
+            Iterator<Long> iter = recentlyBurnt.values().iterator();
             while (iter.hasNext())
-            {
-                Location l = iter.next();
-                Date d = recentlyBurnt.get(l);
-                if (d.before(now))
+                if (iter.next() < now)
                     iter.remove();
-            }
         }
 
     }
@@ -1,8 +1,5 @@
 package com.nitnelave.CreeperHeal.block;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
@@ -31,7 +28,7 @@ class CreeperBed extends CreeperBlock
         Block block = blockState.getBlock();
         if ((blockState.getRawData() & 8) == 0)
             block = block.getRelative(orientation.getOppositeFace());
-        this.blockState = block.getState();
+        load(block.getState());
     }
 
     /*
@@ -63,12 +60,12 @@ class CreeperBed extends CreeperBlock
     /*
      * (non-Javadoc)
      * 
-     * @see com.nitnelave.CreeperHeal.block.CreeperBlock#getNeighbors()
+     * @see com.nitnelave.CreeperHeal.block.CreeperBlock#hasDependentNeighbors()
      */
     @Override
-    public List<NeighborBlock> getDependentNeighbors()
+    boolean hasDependentNeighbors()
     {
-        return new ArrayList<NeighborBlock>();
+        return false;
     }
 
     private BlockFace getFacing(byte data)
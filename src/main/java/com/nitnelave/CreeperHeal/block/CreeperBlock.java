@@ -1,11 +1,11 @@
 package com.nitnelave.CreeperHeal.block;
 
-import com.nitnelave.CreeperHeal.CreeperHeal;
 import com.nitnelave.CreeperHeal.config.CfgVal;
 import com.nitnelave.CreeperHeal.config.CreeperConfig;
 import com.nitnelave.CreeperHeal.events.CHBlockHealEvent.CHBlockHealReason;
+import com.nitnelave.CreeperHeal.utils.CreeperStats;
 import com.nitnelave.CreeperHeal.utils.CreeperUtils;
-import org.bukkit.Bukkit;
+import com.nitnelave.CreeperHeal.utils.PackedLocation;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
@@ -13,6 +13,7 @@ import org.bukkit.block.*;
 import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.material.Attachable;
+import org.bukkit.material.MaterialData;
 
 import java.util.*;
 
@@ -48,9 +49,21 @@ public class CreeperBlock implements Replaceable
     private final static Random random = new Random();
 
     /*
-     * The block represented.
+     * Types of the blocks that can depend on one of their neighbors, indexed
+     * by type id.
      */
-    protected BlockState blockState;
+    private final static boolean[] MAY_DEPEND = buildMayDepend();
+
+    /*
+     * The block represented. Only the world, the packed position, the type
+     * and the data are kept, the BlockState is not retained: it holds
+     * references to the chunk and a MaterialData object for every block.
+     * Subclasses for tile entities keep their own content.
+     */
+    private World world;
+    private long position;
+    private int typeId;
+    private byte data;
 
     /**
      * Create a new CreeperBlock of the right class. Factory method that should
@@ -96,11 +109,6 @@ public class CreeperBlock implements Replaceable
         case WOOD_PLATE:
         case STONE_PLATE:
             return new CreeperPlate(state);
-        case GRASS:
-            return new CreeperGrass(state);
-        case SMOOTH_BRICK:
-        case SMOOTH_STAIRS:
-            return new CreeperBrick(state);
         case WOOD_BUTTON:
         case STONE_BUTTON:
             return new CreeperButton(state);
@@ -108,8 +116,6 @@ public class CreeperBlock implements Replaceable
         case FIRE:
         case AIR:
             return null;
-        case STONE:
-            return new CreeperStone(state);
         default:
             return new CreeperBlock(state);
         }
@@ -120,20 +126,34 @@ public class CreeperBlock implements Replaceable
      */
     protected CreeperBlock(BlockState blockState)
     {
-        this.blockState = blockState;
+        load(blockState);
     }
 
     protected CreeperBlock()
     {}
 
+    /*
+     * Copy the values needed to replace the block from the state.
+     */
+    protected final void load(BlockState state)
+    {
+        world = state.getWorld();
+        position = PackedLocation.pack(state.getX(), state.getY(), state.getZ());
+        typeId = state.getTypeId();
+        data = state.getRawData();
+    }
+
     /**
      * Replace the block in the world.
      */
     public void update()
     {
-        getLocation().getChunk().load();
-        blockState.update(true);
-        getWorld().playSound(getLocation(), CreeperConfig.getSound(), CreeperConfig.getInt(CfgVal.SOUND_VOLUME) / 10F, random.nextFloat() * 2);
+        int chunkX = getX() >> 4, chunkZ = getZ() >> 4;
+        if (!world.isChunkLoaded(chunkX, chunkZ))
+            world.loadChunk(chunkX, chunkZ);
+        Block block = getBlock();
+        block.setTypeIdAndData(typeId, data, true);
+        world.playSound(getLocation(), CreeperConfig.getSound(), CreeperConfig.getInt(CfgVal.SOUND_VOLUME) / 10F, random.nextFloat() * 2);
     }
 
     /*
@@ -144,7 +164,7 @@ public class CreeperBlock implements Replaceable
     @Override
     public Location getLocation()
     {
-        return blockState.getLocation();
+        return new Location(world, getX(), getY(), getZ());
     }
 
     /*
@@ -155,7 +175,7 @@ public class CreeperBlock implements Replaceable
     @Override
     public World getWorld()
     {
-        return blockState.getWorld();
+        return world;
     }
 
     /*
@@ -166,7 +186,7 @@ public class CreeperBlock implements Replaceable
     @Override
     public Block getBlock()
     {
-        return blockState.getBlock();
+        return world.getBlockAt(getX(), getY(), getZ());
     }
 
     /*
@@ -177,7 +197,7 @@ public class CreeperBlock implements Replaceable
     @Override
     public int getTypeId()
     {
-        return blockState.getTypeId();
+        return typeId;
     }
 
     /**
@@ -187,7 +207,53 @@ public class CreeperBlock implements Replaceable
      */
     public byte getRawData()
     {
-        return blockState.getRawData();
+        return data;
+    }
+
+    /**
+     * Get the block's x coordinate.
+     *
+     * @return The block's x coordinate.
+     */
+    public int getX()
+    {
+        return PackedLocation.getX(position);
+    }
+
+    /**
+     * Get the block's y coordinate.
+     *
+     * @return The block's y coordinate.
+     */
+    public int getY()
+    {
+        return PackedLocation.getY(position);
+    }
+
+    /**
+     * Get the block's z coordinate.
+     *
+     * @return The block's z coordinate.
+     */
+    public int getZ()
+    {
+        return PackedLocation.getZ(position);
+    }
+
+    /*
+     * Change the type the block will be replaced with.
+     */
+    protected void setTypeId(int typeId)
+    {
+        this.typeId = typeId;
+    }
+
+    /*
+     * Change the data the block will be replaced with.
+     */
+    protected void setRawData(byte data)
+    {
+        this.data = data;
     }
 
     /**
@@ -204,10 +270,11 @@ public class CreeperBlock implements Replaceable
     {
         if (forced || new Random().nextInt(100) < CreeperConfig.getInt(CfgVal.DROP_CHANCE))
         {
-            Location loc = blockState.getBlock().getLocation();
+            Block block = getBlock();
+            Location loc = block.getLocation();
             World w = loc.getWorld();
 
-            Collection<ItemStack> drop = blockState.getBlock().getDrops();
+            Collection<ItemStack> drop = block.getDrops();
             for (ItemStack s : drop)
                 w.dropItemNaturally(loc, s);
             return true;
@@ -224,7 +291,10 @@ public class CreeperBlock implements Replaceable
     public final boolean replace(boolean shouldDrop)
     {
         if (checkForDrop(getBlock()))
+        {
+            CreeperStats.DROPPED.increment();
             return true;
+        }
 
         if (!shouldDrop && isDependent(getTypeId())
             && isEmpty(getBlock().getRelative(getAttachingFace()).getTypeId()))
@@ -232,6 +302,7 @@ public class CreeperBlock implements Replaceable
 
         update();
         checkForAscendingRails();
+        CreeperStats.REPLACED.increment();
 
         return true;
     }
@@ -264,7 +335,7 @@ public class CreeperBlock implements Replaceable
      * Get whether the block is empty, i.e. if a player can breathe inside it
      * and if it can be replaced by other blocks (snow, water...)
      */
-    private static boolean isEmpty(int typeId)
+    static boolean isEmpty(int typeId)
     {
         return EMPTY_BLOCKS.contains(typeId);
     }
@@ -277,10 +348,7 @@ public class CreeperBlock implements Replaceable
     @Override
     public void delayReplacement(CHBlockHealReason reason)
     {
-        long delay = CreeperConfig.getInt(CfgVal.BLOCK_PER_BLOCK_INTERVAL);
-        DelayReplacement dr = new DelayReplacement(this, 0, reason);
-        int id = Bukkit.getServer().getScheduler().scheduleSyncRepeatingTask(CreeperHeal.getInstance(), dr, delay, delay);
-        dr.setId(id);
+        DelayReplacement.delay(this, reason);
     }
 
     /**
@@ -331,13 +399,38 @@ public class CreeperBlock implements Replaceable
         return DEPENDENT_BLOCKS.contains(typeId) || isDependentDown(typeId);
     }
 
+    /*
+     * Build the table of the types that can depend on a neighbor: those
+     * dependent on the block under, and those attached to a block.
+     */
+    private static boolean[] buildMayDepend()
+    {
+        int max = 0;
+        for (Material m : Material.values())
+            max = Math.max(max, m.getId());
+        boolean[] table = new boolean[max + 1];
+        for (Material m : Material.values())
+            table[m.getId()] = isDependent(m.getId()) || Attachable.class.isAssignableFrom(m.getData());
+        return table;
+    }
+
+    /*
+     * Get whether a block of this type can depend on one of its neighbors.
+     * Used to skip the neighbors that cannot be dependent without reading
+     * their state.
+     */
+    static boolean mayDepend(int typeId)
+    {
+        return typeId >= 0 && typeId < MAY_DEPEND.length && MAY_DEPEND[typeId];
+    }
+
     /*
      * Test the blocks directly in contact, and if they are ascending rails, add
      * them to the updatePrevention list.
      */
     private void checkForAscendingRails()
     {
-        Block block = blockState.getBlock();
+        Block block = getBlock();
         for (BlockFace face : CARDINALS)
         {
             if (face == BlockFace.DOWN)
@@ -360,9 +453,13 @@ public class CreeperBlock implements Replaceable
     @Override
     public BlockFace getAttachingFace()
     {
-        if (blockState.getData() instanceof Attachable)
-            return ((Attachable) blockState.getData()).getAttachedFace();
-        if (isDependentDown(blockState.getTypeId()))
+        Material type = Material.getMaterial(typeId);
+        if (type != null && Attachable.class.isAssignableFrom(type.getData()))
+        {
+            MaterialData materialData = type.getNewData(data);
+            return ((Attachable) materialData).getAttachedFace();
+        }
+        if (isDependentDown(typeId))
             return BlockFace.DOWN;
         return BlockFace.SELF;
     }
@@ -399,10 +496,21 @@ public class CreeperBlock implements Replaceable
     public List<NeighborBlock> getDependentNeighbors()
     {
         List<NeighborBlock> neighbors = new ArrayList<NeighborBlock>();
+        if (!hasDependentNeighbors())
+            return neighbors;
         Block block = getBlock();
         for (BlockFace face : CARDINALS)
             neighbors.add(new NeighborBlock(block.getRelative(face), face));
         return neighbors;
     }
 
+    /*
+     * Get whether other blocks can depend on this one. Blocks that span two
+     * positions (doors, beds) handle their other half themselves.
+     */
+    boolean hasDependentNeighbors()
+    {
+        return true;
+    }
+
 }
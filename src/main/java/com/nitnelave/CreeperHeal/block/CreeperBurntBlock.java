@@ -1,7 +1,5 @@
 package com.nitnelave.CreeperHeal.block;
 
-import java.util.Date;
-
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -33,12 +31,11 @@ public class CreeperBurntBlock
      * @param block
      *            The burnt block.
      */
-    public CreeperBurntBlock(Date now, Replaceable block)
+    public CreeperBurntBlock(long now, Replaceable block)
     {
         this.block = block;
         boolean timed = block == null ? false : CreeperConfig.getWorld(getWorld()).isRepairTimed();
-        timer = new ReplacementTimer(new Date(now.getTime() + 1000
-                                              * CreeperConfig.getInt(CfgVal.WAIT_BEFORE_HEAL_BURNT)), timed);
+        timer = new ReplacementTimer(now + 1000L * CreeperConfig.getInt(CfgVal.WAIT_BEFORE_HEAL_BURNT), timed);
     }
 
     /**
@@ -49,7 +46,7 @@ public class CreeperBurntBlock
      * @param state
      *            The blockState to be represented.
      */
-    public CreeperBurntBlock(Date now, BlockState state)
+    public CreeperBurntBlock(long now, BlockState state)
     {
         this(now, CreeperBlock.newBlock(state));
     }
@@ -158,9 +155,9 @@ public class CreeperBurntBlock
     /**
      * Get the time after which the block should be replaced.
      * 
-     * @return The time.
+     * @return The time, on the CreeperClock.
      */
-    public Date getTime()
+    public long getTime()
     {
         return timer.getTime();
     }
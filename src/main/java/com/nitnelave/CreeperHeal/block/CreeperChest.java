@@ -27,6 +27,11 @@ class CreeperChest extends CreeperBlock
 
     private final Block chest;
 
+    /*
+     * The chest in the world, only needed until it is removed.
+     */
+    private InventoryHolder holder;
+
     private NeighborChest neighbor = null;
 
     private ItemStack[] storedInventory = null, neighborInventory = null;
@@ -38,7 +43,8 @@ class CreeperChest extends CreeperBlock
     {
         super(blockState);
         chest = getBlock();
-        Inventory inv = ((InventoryHolder) blockState).getInventory();
+        holder = (InventoryHolder) blockState;
+        Inventory inv = holder.getInventory();
         storedInventory = inv.getContents();
         if (inv.getType() == InventoryType.CHEST)
         {
@@ -64,15 +70,19 @@ class CreeperChest extends CreeperBlock
     @Override
     public void remove()
     {
-        if (CreeperConfig.getWorld(getWorld()).getBool(WCfgVal.DROP_CHEST_CONTENTS))
+        if (holder != null)
         {
-            World w = getWorld();
-            Location loc = getLocation();
-            for (ItemStack st : ((InventoryHolder) blockState).getInventory().getContents())
-                if (st != null)
-                    w.dropItemNaturally(loc, st);
+            if (CreeperConfig.getWorld(getWorld()).getBool(WCfgVal.DROP_CHEST_CONTENTS))
+            {
+                World w = getWorld();
+                Location loc = getLocation();
+                for (ItemStack st : holder.getInventory().getContents())
+                    if (st != null)
+                        w.dropItemNaturally(loc, st);
+            }
+            holder.getInventory().clear();
+            holder = null;
         }
-        ((InventoryHolder) blockState).getInventory().clear();
         getBlock().setType(Material.AIR);
         if (neighbor != null)
             neighbor.getBlock().setType(Material.AIR);
@@ -109,6 +119,32 @@ class CreeperChest extends CreeperBlock
         return CreeperUtils.concat(newInv, otherInv);
     }
 
+    /*
+     * Get the inventory of this chest, without the other half of a double
+     * chest.
+     */
+    ItemStack[] getStoredInventory()
+    {
+        return storedInventory;
+    }
+
+    /*
+     * Get the inventory of the other half of the double chest, null if it is a
+     * simple chest.
+     */
+    ItemStack[] getNeighborInventory()
+    {
+        return neighborInventory;
+    }
+
+    /*
+     * Get the other half of the double chest, null if it is a simple chest.
+     */
+    NeighborChest getNeighbor()
+    {
+        return neighbor;
+    }
+
     /*
      * Get whether the chest has a neighbor (double chest).
      */
@@ -126,8 +162,8 @@ class CreeperChest extends CreeperBlock
     public void update()
     {
         super.update();
-        getBlock().setType(blockState.getType());
-        getBlock().setData(blockState.getRawData());
+        getBlock().setTypeId(getTypeId());
+        getBlock().setData(getRawData());
         if (!CreeperConfig.getWorld(getWorld()).getBool(WCfgVal.DROP_CHEST_CONTENTS))
             try
             {
@@ -12,14 +12,26 @@ import com.nitnelave.CreeperHeal.config.CreeperConfig;
  * the end of the list, so they are replaced after the block they are dependent
  * upon. Otherwise, altitude is the only criterion. Note: this comparator
  * imposes ordering that is inconsistent with equals.
- * 
+ *
+ * The order is computed as a primitive key for each block (see getKey), so
+ * that a block's key can be computed once and compared cheaply. The key only
+ * depends on the block and on the location given at construction, so a list
+ * sorted with it stays sorted when blocks are added to the explosion.
+ *
  * @author nitnelave
- * 
+ *
  */
 class CreeperComparator implements Comparator<Replaceable>
 {
 
+    private final static int DEPENDENT_SHIFT = 62;
+    private final static int Y_SHIFT = 50;
+    private final static int X_SHIFT = 25;
+    private final static long Y_MASK = (1L << 12) - 1;
+    private final static int OFFSET_LIMIT = (1 << 24) - 1;
+
     private final Location loc;
+    private final boolean byRadius;
 
     /**
      * Constructor. Order between blocks with the same dependency status and at
@@ -28,58 +40,78 @@ class CreeperComparator implements Comparator<Replaceable>
     public CreeperComparator()
     {
         loc = null;
+        byRadius = false;
     }
 
     /**
      * Constructor. The blocks are ordered as a last criterion by distance fron
-     * the explosion, the closest first.
-     * 
+     * the explosion, the furthest first.
+     *
      * @param loc
      *            The center of the explosion.
      */
     CreeperComparator(Location loc)
     {
-        this.loc = loc;
+        this.loc = loc.clone();
+        byRadius = CreeperConfig.getBool(CfgVal.SORT_BY_RADIUS);
     }
 
     /*
      * (non-Javadoc)
-     * 
+     *
      * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
      */
     @Override
     public int compare(Replaceable b1, Replaceable b2)
     {
-        boolean d1 = b1.isDependent(), d2 = b2.isDependent();
-        if (d1 && !d2)
-            return 1;
-        else if (d2 && !d1)
+        long k1 = getKey(b1), k2 = getKey(b2);
+        if (k1 < k2)
             return -1;
-
-        int pos1 = b1.getLocation().getBlockY(), pos2 = b2.getLocation().getBlockY();
-        if (pos1 > pos2)
+        else if (k1 > k2)
             return 1;
-        else if (pos1 < pos2)
-            return -1;
-        if (loc == null || !CreeperConfig.getBool(CfgVal.SORT_BY_RADIUS))
+        return 0;
+    }
+
+    /*
+     * Get the sort key of a block: the dependency status, then the altitude,
+     * then either the distance from the explosion (the furthest first) or the
+     * coordinates relative to the explosion (the highest first).
+     */
+    long getKey(Replaceable b)
+    {
+        int x, y, z;
+        if (b instanceof CreeperBlock)
         {
-            int dx = b2.getLocation().getBlockX() - b1.getLocation().getBlockX();
-            if (dx > 0)
-                return 1;
-            else if (dx < 0)
-                return -1;
-            return b2.getLocation().getBlockZ() - b1.getLocation().getBlockZ();
+            CreeperBlock cb = (CreeperBlock) b;
+            x = cb.getX();
+            y = cb.getY();
+            z = cb.getZ();
         }
-        return sgn(b2.getLocation().distance(loc) - b1.getLocation().distance(loc));
+        else
+        {
+            Location l = b.getLocation();
+            x = l.getBlockX();
+            y = l.getBlockY();
+            z = l.getBlockZ();
+        }
+
+        long key = (b.isDependent() ? 1L : 0L) << DEPENDENT_SHIFT | (y & Y_MASK) << Y_SHIFT;
+        if (loc == null || !byRadius)
+        {
+            int ox = loc == null ? 0 : loc.getBlockX(), oz = loc == null ? 0 : loc.getBlockZ();
+            return key | (long) offset(ox - x) << X_SHIFT | offset(oz - z);
+        }
+        double dx = x - loc.getX(), dy = y - loc.getY(), dz = z - loc.getZ();
+        float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return key | (Integer.MAX_VALUE - Float.floatToIntBits(distance));
     }
 
-    private int sgn(double d)
+    /*
+     * Shift a relative coordinate to a positive value on 25 bits.
+     */
+    private static int offset(int d)
     {
-        if (d < 0)
-            return -1;
-        else if (d > 0)
-            return 1;
-        return 0;
+        return Math.max(-OFFSET_LIMIT, Math.min(OFFSET_LIMIT, d)) + OFFSET_LIMIT;
     }
 
 }
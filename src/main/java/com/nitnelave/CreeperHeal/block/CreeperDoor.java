@@ -1,8 +1,5 @@
 package com.nitnelave.CreeperHeal.block;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
@@ -27,7 +24,7 @@ class CreeperDoor extends CreeperBlock
         Block block = blockState.getBlock();
         if ((blockState.getRawData() & 8) != 0)
             block = block.getRelative(BlockFace.DOWN);
-        this.blockState = block.getState();
+        load(block.getState());
         hingeRight = (block.getRelative(BlockFace.UP).getState().getRawData() & 1) == 0;
     }
 
@@ -39,7 +36,7 @@ class CreeperDoor extends CreeperBlock
     @Override
     public void update()
     {
-        Block blockUp = blockState.getBlock().getRelative(BlockFace.UP);
+        Block blockUp = getBlock().getRelative(BlockFace.UP);
         if (checkForDrop(blockUp))
             return;
 
@@ -63,12 +60,12 @@ class CreeperDoor extends CreeperBlock
     /*
      * (non-Javadoc)
      * 
-     * @see com.nitnelave.CreeperHeal.block.CreeperBlock#getNeighbors()
+     * @see com.nitnelave.CreeperHeal.block.CreeperBlock#hasDependentNeighbors()
      */
     @Override
-    public List<NeighborBlock> getDependentNeighbors()
+    boolean hasDependentNeighbors()
     {
-        return new ArrayList<NeighborBlock>();
+        return false;
     }
 
 }
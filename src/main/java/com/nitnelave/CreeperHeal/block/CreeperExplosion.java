@@ -1,11 +1,12 @@
 package com.nitnelave.CreeperHeal.block;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Date;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Random;
 
 import org.bukkit.Bukkit;
@@ -13,13 +14,18 @@ import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
 
 import com.nitnelave.CreeperHeal.config.CfgVal;
 import com.nitnelave.CreeperHeal.config.CreeperConfig;
 import com.nitnelave.CreeperHeal.config.WorldConfig;
 import com.nitnelave.CreeperHeal.events.CHBlockHealEvent;
 import com.nitnelave.CreeperHeal.events.CHBlockHealEvent.CHBlockHealReason;
-import com.nitnelave.CreeperHeal.utils.ShortLocation;
+import com.nitnelave.CreeperHeal.utils.CreeperClock;
+import com.nitnelave.CreeperHeal.utils.CreeperStats;
+import com.nitnelave.CreeperHeal.utils.LongHashSet;
+import com.nitnelave.CreeperHeal.utils.PackedLocation;
 import com.nitnelave.CreeperHeal.utils.Suffocating;
 
 /**
@@ -31,15 +37,39 @@ import com.nitnelave.CreeperHeal.utils.Suffocating;
  */
 public class CreeperExplosion
 {
-    /**
-     * The time after which the block replacements begin.
+    /*
+     * The blocks recorded, sorted, with their sort keys so that adding blocks
+     * does not compute the keys of the blocks already sorted.
      */
-    private final LinkedList<Replaceable> blockList;
+    private final LinkedList<KeyedBlock> blockList;
     private Location loc;
     private int locWeight = 0;
     private double radius = 0;
+    /*
+     * The radius is the distance between the center the blocks were measured
+     * from and the furthest block, plus the distance the center of the
+     * explosion moved since. It is measured again when the center moved too
+     * far.
+     */
+    private final static double RADIUS_TOLERANCE = 2;
+    private double radiusX, radiusY, radiusZ, maxDistance = 0;
     private final WorldConfig world;
-    private final HashSet<ShortLocation> checked = new HashSet<ShortLocation>();
+    private final CreeperComparator comparator;
+    /*
+     * The positions already visited while recording, only kept while blocks
+     * are being added.
+     */
+    private LongHashSet checked = null;
+    /*
+     * The order of the replacement, planned from the blocks recorded when it
+     * starts. The blocks recorded afterwards are added to it.
+     */
+    private HealPlan plan = null;
+    /*
+     * The blocks recorded while blocks are being added, sorted once they are
+     * all recorded.
+     */
+    private List<Replaceable> capture = null;
     private ReplacementTimer timer;
 
     /**
@@ -51,10 +81,14 @@ public class CreeperExplosion
     public CreeperExplosion(Location loc)
     {
         world = CreeperConfig.getWorld(loc.getWorld());
-        timer = new ReplacementTimer(new Date(new Date().getTime() + 1000
-                                              * CreeperConfig.getInt(CfgVal.WAIT_BEFORE_HEAL)), world.isRepairTimed());
-        blockList = new LinkedList<Replaceable>();
-        this.loc = loc;
+        timer = new ReplacementTimer(CreeperClock.now() + 1000L * CreeperConfig.getInt(CfgVal.WAIT_BEFORE_HEAL),
+                                     world.isRepairTimed());
+        blockList = new LinkedList<KeyedBlock>();
+        this.loc = loc.clone();
+        radiusX = loc.getX();
+        radiusY = loc.getY();
+        radiusZ = loc.getZ();
+        comparator = new CreeperComparator(loc);
     }
 
     /**
@@ -66,45 +100,110 @@ public class CreeperExplosion
      */
     public void addBlocks(List<Block> blocks, Location newLoc)
     {
-        timer = new ReplacementTimer(new Date(new Date().getTime() + 1000
-                                              * CreeperConfig.getInt(CfgVal.WAIT_BEFORE_HEAL)), world.isRepairTimed());
-        loc = new Location(loc.getWorld(), (locWeight * loc.getX() + newLoc.getX())
-                                           / (locWeight + 1), (locWeight * loc.getY() + newLoc.getY())
-                                                              / (locWeight + 1), (locWeight
-                                                                                  * loc.getZ() + newLoc.getZ())
-                                                                                 / (locWeight + 1));
+        timer = new ReplacementTimer(CreeperClock.now() + 1000L * CreeperConfig.getInt(CfgVal.WAIT_BEFORE_HEAL),
+                                     world.isRepairTimed());
+        loc.setX((locWeight * loc.getX() + newLoc.getX()) / (locWeight + 1));
+        loc.setY((locWeight * loc.getY() + newLoc.getY()) / (locWeight + 1));
+        loc.setZ((locWeight * loc.getZ() + newLoc.getZ()) / (locWeight + 1));
         locWeight++;
-        checked.clear();
+        checked = new LongHashSet(blocks.size());
+        capture = new ArrayList<Replaceable>(blocks.size());
         recordBlocks(blocks);
         if (CreeperConfig.getBool(CfgVal.EXPLODE_OBSIDIAN))
             checkForObsidian();
-
-        Collections.sort(blockList, new CreeperComparator(loc));
+        addCaptured();
         radius = computeRadius();
     }
 
+    /*
+     * Add the blocks captured to the sorted list, or to the plan if the
+     * replacement started.
+     */
+    private void addCaptured()
+    {
+        List<Replaceable> added = capture;
+        capture = null;
+        checked = null;
+        for (Replaceable b : added)
+            track(b);
+        if (plan == null)
+            merge(sort(added.toArray(new Replaceable[added.size()]), comparator));
+        else
+            plan.addAll(added);
+    }
+
     /**
      * Get the time of the explosion.
      * 
-     * @return The time of the explosion.
+     * @return The time of the explosion, on the CreeperClock.
      */
-    public Date getTime()
+    public long getTime()
     {
         return timer.getTime();
     }
 
+    /**
+     * Get whether the explosion is in a world with timed repairs, and is only
+     * replaced at the repair time.
+     * 
+     * @return Whether the replacement is timed.
+     */
+    public boolean isTimed()
+    {
+        return timer.isTimed();
+    }
+
     /*
-     * Get the distance between the explosion's location and the furthest block.
+     * Get an upper bound of the distance between the explosion's location and
+     * the furthest block, plus one. The blocks are only measured again if the
+     * location moved further than the tolerance.
      */
     private double computeRadius()
     {
-        double r = 0;
-        for (Replaceable b : blockList)
+        double drift = distance(loc.getX(), loc.getY(), loc.getZ());
+        if (drift > RADIUS_TOLERANCE)
+        {
+            radiusX = loc.getX();
+            radiusY = loc.getY();
+            radiusZ = loc.getZ();
+            maxDistance = 0;
+            for (Replaceable b : getBlocks())
+                track(b);
+            drift = 0;
+        }
+        return maxDistance + drift + 1;
+    }
+
+    /*
+     * Update the distance of the furthest block with a new block.
+     */
+    private void track(Replaceable b)
+    {
+        int x, y, z;
+        if (b instanceof CreeperBlock)
+        {
+            CreeperBlock cb = (CreeperBlock) b;
+            x = cb.getX();
+            y = cb.getY();
+            z = cb.getZ();
+        }
+        else
         {
-            Location bl = b.getBlock().getLocation();
-            r = Math.max(r, loc.distance(bl));
+            Location l = b.getLocation();
+            x = l.getBlockX();
+            y = l.getBlockY();
+            z = l.getBlockZ();
         }
-        return r + 1;
+        maxDistance = Math.max(maxDistance, distance(x, y, z));
+    }
+
+    /*
+     * Distance to the center the radius is measured from.
+     */
+    private double distance(double x, double y, double z)
+    {
+        double dx = x - radiusX, dy = y - radiusY, dz = z - radiusZ;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
     }
 
     /**
@@ -133,43 +232,153 @@ public class CreeperExplosion
      */
     protected void replace_blocks(boolean shouldDrop, CHBlockHealReason reason)
     {
-        Iterator<Replaceable> iter = blockList.iterator();
-        while (iter.hasNext())
+        HealPlan plan = getPlan();
+        List<Replaceable> postponed = new ArrayList<Replaceable>();
+        Replaceable block;
+        while ((block = plan.poll()) != null)
         {
-            Replaceable block = iter.next();
             CHBlockHealEvent event = new CHBlockHealEvent(block, shouldDrop, reason);
             Bukkit.getPluginManager().callEvent(event);
-            if (!event.isCancelled() && block.replace(event.shouldDrop()))
-                iter.remove();
+            if (event.isCancelled() || !replace(block, event.shouldDrop()))
+                postponed.add(block);
         }
         if (shouldDrop)
         {
-            blockList.clear();
-
             if (CreeperConfig.getBool(CfgVal.TELEPORT_ON_SUFFOCATE))
                 Suffocating.checkPlayerExplosion(loc, radius);
         }
+        /*
+         * The blocks left are attached to a block outside of the explosion.
+         */
+        else
+            plan.addAll(postponed);
     }
 
     /**
-     * Replace the first block of the list.
-     * 
-     * @return False if the list is now empty.
+     * Replace the next block of the plan. Its support was already replaced,
+     * unless it is outside of the explosion: then the replacement is delayed.
      */
     private void replace_one_block()
     {
-        Replaceable block;
-        if (blockList.isEmpty())
+        if (isEmpty())
             return;
-        block = blockList.remove();
+        Replaceable block = getPlan().poll();
         CHBlockHealEvent event = new CHBlockHealEvent(block, false, CHBlockHealReason.BLOCK_BY_BLOCK);
         Bukkit.getPluginManager().callEvent(event);
-        if (!event.isCancelled() && !block.replace(event.shouldDrop()))
+        if (!event.isCancelled() && !replace(block, event.shouldDrop()))
             block.delayReplacement(CHBlockHealReason.BLOCK_BY_BLOCK);
         if (CreeperConfig.getBool(CfgVal.TELEPORT_ON_SUFFOCATE))
             Suffocating.checkPlayerOneBlock(block.getBlock().getLocation());
     }
 
+    /*
+     * Replace the first blocks of the list that are in the same chunk
+     * section, or drop them if they can't be replaced. Used when the
+     * replacement of the whole explosion is spread over several ticks: the
+     * blocks of a section are written in the same tick, so that the server
+     * sends them in a single packet.
+     */
+    void replaceNextBatch()
+    {
+        if (isEmpty())
+            return;
+        HealPlan plan = getPlan();
+        long batch = getBatchKey(plan.peek());
+        do
+        {
+            Replaceable block = plan.poll();
+            CHBlockHealEvent event = new CHBlockHealEvent(block, true, CHBlockHealReason.EXPLOSION);
+            Bukkit.getPluginManager().callEvent(event);
+            if (!event.isCancelled())
+                replace(block, event.shouldDrop());
+        } while (!plan.isEmpty() && getBatchKey(plan.peek()) == batch);
+        if (plan.isEmpty() && CreeperConfig.getBool(CfgVal.TELEPORT_ON_SUFFOCATE))
+            Suffocating.checkPlayerExplosion(loc, radius);
+    }
+
+    /*
+     * Plan the replacement of the blocks recorded, the first time it is
+     * needed. The blocks are released once the blocks they are attached to
+     * are replaced. Unless the blocks are replaced one by one, they are
+     * preferably released by chunk section.
+     */
+    private HealPlan getPlan()
+    {
+        if (plan == null)
+        {
+            if (CreeperConfig.getBool(CfgVal.BLOCK_PER_BLOCK))
+                plan = new HealPlan(blocksOf(blockList));
+            else
+                plan = new HealPlan(groupByChunk());
+            blockList.clear();
+        }
+        return plan;
+    }
+
+    /*
+     * Order the blocks by chunk section before replacing them all, so that
+     * the blocks of a chunk are written together. The order inside a section
+     * (by altitude) is kept.
+     */
+    private List<Replaceable> groupByChunk()
+    {
+        KeyedBlock[] batch = new KeyedBlock[blockList.size()];
+        int i = 0;
+        for (KeyedBlock k : blockList)
+            batch[i++] = new KeyedBlock(getBatchKey(k.block), k.block);
+        Arrays.sort(batch);
+        return blocksOf(Arrays.asList(batch));
+    }
+
+    /*
+     * Get the blocks, without their keys.
+     */
+    private static List<Replaceable> blocksOf(Collection<KeyedBlock> keyed)
+    {
+        List<Replaceable> blocks = new ArrayList<Replaceable>(keyed.size());
+        for (KeyedBlock k : keyed)
+            blocks.add(k.block);
+        return blocks;
+    }
+
+    /*
+     * Get the key of the group a block is replaced with: the chunk and the
+     * section. A dependent block released while its section is replaced is
+     * replaced in the same group.
+     */
+    private static long getBatchKey(Replaceable b)
+    {
+        int x, y, z;
+        if (b instanceof CreeperBlock)
+        {
+            CreeperBlock cb = (CreeperBlock) b;
+            x = cb.getX();
+            y = cb.getY();
+            z = cb.getZ();
+        }
+        else
+        {
+            Location l = b.getLocation();
+            x = l.getBlockX();
+            y = l.getBlockY();
+            z = l.getBlockZ();
+        }
+        long chunkX = (x >> 4) + (1 << 21) & (1 << 22) - 1, chunkZ = (z >> 4) + (1 << 21) & (1 << 22) - 1;
+        return chunkX << 30 | chunkZ << 8 | (y >> 4) & 0xFF;
+    }
+
+    /*
+     * Replace a block. Almost every recorded block is a CreeperBlock, whose
+     * replace method is final: calling it through the class keeps the call
+     * monomorphic instead of dispatching on every Replaceable implementation.
+     */
+    private static boolean replace(Replaceable block, boolean shouldDrop)
+    {
+        if (block instanceof CreeperBlock)
+            return ((CreeperBlock) block).replace(shouldDrop);
+        return block.replace(shouldDrop);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -200,27 +409,93 @@ public class CreeperExplosion
     }
 
     /*
-     * Check for dependent blocks and record them first.
+     * Sort blocks by their keys.
      */
-    private void recordBlocks(List<Block> blocks)
+    private static KeyedBlock[] sort(Replaceable[] blocks, CreeperComparator comparator)
     {
-        if (!blocks.isEmpty())
-        {
-            Iterator<Block> iter = blocks.iterator();
-            while (iter.hasNext())
+        KeyedBlock[] batch = new KeyedBlock[blocks.length];
+        for (int i = 0; i < blocks.length; i++)
+            batch[i] = new KeyedBlock(comparator.getKey(blocks[i]), blocks[i]);
+        Arrays.sort(batch);
+        return batch;
+    }
+
+    /*
+     * Merge sorted blocks with the blocks of the list, already sorted. The
+     * sort keys do not depend on the current center of the explosion, so the
+     * blocks already sorted keep their order.
+     */
+    private void merge(KeyedBlock[] batch)
+    {
+        int i = 0;
+        ListIterator<KeyedBlock> iter = blockList.listIterator();
+        while (i < batch.length && iter.hasNext())
+            if (iter.next().key > batch[i].key)
             {
-                Block b = iter.next();
-                if (CreeperBlock.isDependent(b.getTypeId()))
-                {
-                    record(b);
-                    iter.remove();
-                }
+                iter.previous();
+                iter.add(batch[i++]);
             }
-            for (Block b : blocks)
-                record(b);
+        while (i < batch.length)
+            blockList.add(batch[i++]);
+    }
+
+    /*
+     * Insert a block at its place in the sorted list. The blocks added one
+     * by one are usually dependent, so the search starts from the end.
+     */
+    private void insertSorted(Replaceable block)
+    {
+        long key = comparator.getKey(block);
+        ListIterator<KeyedBlock> iter = blockList.listIterator(blockList.size());
+        while (iter.hasPrevious())
+            if (iter.previous().key <= key)
+            {
+                iter.next();
+                break;
+            }
+        iter.add(new KeyedBlock(key, block));
+    }
+
+    /*
+     * A block with its precomputed sort key.
+     */
+    private static class KeyedBlock implements Comparable<KeyedBlock>
+    {
+        private final long key;
+        private final Replaceable block;
+
+        private KeyedBlock(long key, Replaceable block)
+        {
+            this.key = key;
+            this.block = block;
+        }
+
+        @Override
+        public int compareTo(KeyedBlock o)
+        {
+            if (key < o.key)
+                return -1;
+            else if (key > o.key)
+                return 1;
+            return 0;
         }
     }
 
+    /*
+     * Check for dependent blocks and record them first.
+     */
+    private void recordBlocks(List<Block> blocks)
+    {
+        for (Block b : blocks)
+            if (CreeperBlock.isDependent(b.getTypeId()))
+                record(b);
+        /*
+         * The dependent blocks are already in the checked set, and skipped.
+         */
+        for (Block b : blocks)
+            record(b);
+    }
+
     /*
      * In case of possible obsidian destruction, check for obsidian around, and
      * give them a chance to be destroyed.
@@ -230,6 +505,7 @@ public class CreeperExplosion
         int radius = CreeperConfig.getInt(CfgVal.OBSIDIAN_RADIUS);
         double chance = ((float) CreeperConfig.getInt(CfgVal.OBSIDIAN_CHANCE)) / 100;
         World w = loc.getWorld();
+        double x = loc.getX(), y = loc.getY(), z = loc.getZ();
 
         Random r = new Random(System.currentTimeMillis());
         boolean table = CreeperConfig.getBool(CfgVal.OBSIDIAN_TABLE);
@@ -239,16 +515,15 @@ public class CreeperExplosion
                                                                                                + radius); j++)
                 for (int k = loc.getBlockZ() - radius; k < loc.getBlockZ() + radius; k++)
                 {
-                    Location l = new Location(w, i, j, k);
-                    if (l.distance(loc) > radius)
+                    if ((i - x) * (i - x) + (j - y) * (j - y) + (k - z) * (k - z) > radius * radius)
                         continue;
-                    Block b = l.getBlock();
+                    Block b = w.getBlockAt(i, j, k);
                     if (isObsidianLike(b.getType(), table) && r.nextDouble() < chance)
                         record(b);
                 }
     }
 
-    private boolean isObsidianLike(Material m, boolean table)
+    private static boolean isObsidianLike(Material m, boolean table)
     {
         return m == Material.OBSIDIAN
                || (table && (m == Material.ENCHANTMENT_TABLE || m == Material.ENDER_CHEST));
@@ -265,41 +540,50 @@ public class CreeperExplosion
     {
     	if (block.getType() == Material.PORTAL)
     		return;
-    	
-        CreeperBlock cBlock = CreeperBlock.newBlock(block.getState());
 
-        if (cBlock == null || checked.contains(new ShortLocation(block)))
+        if (checked == null)
+            checked = new LongHashSet();
+        if (!checked.add(PackedLocation.pack(block)))
             return;
 
-        checked.add(new ShortLocation(block));
+        BlockState state = block.getState();
+        int typeId = state.getTypeId();
+        byte data = state.getRawData();
+        record(block, state, typeId, data, CreeperBlock.newBlock(state));
+    }
 
-        if ((CreeperConfig.getBool(CfgVal.PREVENT_CHAIN_REACTION) && block.getType().equals(Material.TNT))
-            || world.isProtected(block))
+    /*
+     * Record a block whose state was already read, and marked as checked. The
+     * type and data are read before the replacement settings are applied to
+     * the state.
+     */
+    private void record(Block block, BlockState state, int typeId, byte data, CreeperBlock cBlock)
+    {
+        if (cBlock == null)
+            return;
+
+        if ((CreeperConfig.getBool(CfgVal.PREVENT_CHAIN_REACTION) && typeId == Material.TNT.getId())
+            || world.isProtected(state, typeId, data))
         {
-            CreeperBlock b = CreeperBlock.newBlock(block.getState());
-            if (b != null)
-            {
-                ToReplaceList.addToReplace(b);
-                b.remove();
-            }
+            ToReplaceList.addToReplace(cBlock);
+            cBlock.remove();
             return;
         }
 
-        BlockId id = new BlockId(block);
-        if (!world.isBlackListed(id))
+        if (!world.isBlackListed(typeId, data))
         {
             // The block should be replaced.
 
-            for (NeighborBlock b : cBlock.getDependentNeighbors())
-                if (b.isNeighbor())
-                    record(b.getBlock());
+            if (cBlock.hasDependentNeighbors())
+                recordDependentNeighbors(block);
 
-            CreeperBlock b = CreeperBlock.newBlock(block.getState());
-            if (b != null)
-            {
-                blockList.add(b);
-                b.remove();
-            }
+            CreeperStats.RECORDED.increment();
+            if (capture == null)
+                addSorted(cBlock);
+            else
+                capture.add(cBlock);
+            HealJournal.logRecord(cBlock);
+            cBlock.remove();
         }
         else if (CreeperConfig.getBool(CfgVal.DROP_DESTROYED_BLOCKS))
         {
@@ -310,6 +594,32 @@ public class CreeperExplosion
 
     }
 
+    /*
+     * Record the blocks around that depend on this one. The state of a
+     * neighbor is only read if its type can be dependent, and read once.
+     */
+    private void recordDependentNeighbors(Block block)
+    {
+        for (BlockFace face : CreeperBlock.CARDINALS)
+        {
+            Block b = block.getRelative(face);
+            if (!CreeperBlock.mayDepend(b.getTypeId()))
+                continue;
+            long position = PackedLocation.pack(b);
+            if (checked.contains(position))
+                continue;
+            BlockState state = b.getState();
+            int typeId = state.getTypeId();
+            byte data = state.getRawData();
+            CreeperBlock neighbor = CreeperBlock.newBlock(state);
+            if (NeighborBlock.isNeighbor(neighbor, face))
+            {
+                checked.add(position);
+                record(b, state, typeId, data, neighbor);
+            }
+        }
+    }
+
     /**
      * Add a Replaceable to the list, and remove it from the world.
      * 
@@ -320,11 +630,26 @@ public class CreeperExplosion
     {
         if (block != null)
         {
-            blockList.add(block);
+            addSorted(block);
+            CreeperStats.RECORDED.increment();
             block.remove();
         }
     }
 
+    /*
+     * Add a block recorded alone to the sorted list, or to the plan if the
+     * replacement started.
+     */
+    private void addSorted(Replaceable block)
+    {
+        if (plan == null)
+            insertSorted(block);
+        else
+            plan.addAll(Collections.singletonList(block));
+        track(block);
+        radius = computeRadius();
+    }
+
     /**
      * Check if the explosion has blocks to repair, and repair them (or one of
      * them in case of block per block).
@@ -361,6 +686,30 @@ public class CreeperExplosion
         return timer.checkReplace();
     }
 
+    /*
+     * Get the blocks still waiting to be replaced.
+     */
+    List<Replaceable> getBlocks()
+    {
+        List<Replaceable> list;
+        if (plan == null)
+            list = blocksOf(blockList);
+        else
+        {
+            list = new ArrayList<Replaceable>();
+            plan.collectPending(list);
+        }
+        return list;
+    }
+
+    /*
+     * Get the number of blocks still waiting to be replaced.
+     */
+    int size()
+    {
+        return plan == null ? blockList.size() : plan.size();
+    }
+
     /**
      * Get whether the list of blocks to be replaced is empty.
      * 
@@ -368,7 +717,7 @@ public class CreeperExplosion
      */
     public boolean isEmpty()
     {
-        return blockList.isEmpty();
+        return plan == null ? blockList.isEmpty() : plan.isEmpty();
     }
 
 }
@@ -1,6 +1,5 @@
 package com.nitnelave.CreeperHeal.block;
 
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Block;
@@ -10,9 +9,6 @@ import org.bukkit.entity.Hanging;
 import org.bukkit.entity.ItemFrame;
 import org.bukkit.entity.Painting;
 
-import com.nitnelave.CreeperHeal.CreeperHeal;
-import com.nitnelave.CreeperHeal.config.CfgVal;
-import com.nitnelave.CreeperHeal.config.CreeperConfig;
 import com.nitnelave.CreeperHeal.events.CHBlockHealEvent.CHBlockHealReason;
 
 /**
@@ -141,10 +137,7 @@ public abstract class CreeperHanging implements Replaceable
     @Override
     public void delayReplacement(CHBlockHealReason reason)
     {
-        long delay = CreeperConfig.getInt(CfgVal.BLOCK_PER_BLOCK_INTERVAL);
-        DelayReplacement dr = new DelayReplacement(this, 0, reason);
-        int id = Bukkit.getServer().getScheduler().scheduleSyncRepeatingTask(CreeperHeal.getInstance(), dr, delay, delay);
-        dr.setId(id);
+        DelayReplacement.delay(this, reason);
     }
 
 }
@@ -1,5 +1,7 @@
 package com.nitnelave.CreeperHeal.block;
 
+import org.bukkit.SkullType;
+import org.bukkit.block.BlockFace;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.Skull;
 
@@ -13,12 +15,44 @@ import org.bukkit.block.Skull;
 class CreeperHead extends CreeperBlock
 {
 
+    private final BlockFace rotation;
+    private final SkullType skullType;
+    private final String owner;
+
     /*
      * Constructor.
      */
     protected CreeperHead(BlockState blockState)
     {
         super(blockState);
+        Skull skull = (Skull) blockState;
+        rotation = skull.getRotation();
+        skullType = skull.getSkullType();
+        owner = skull.hasOwner() ? skull.getOwner() : null;
+    }
+
+    /*
+     * Get the direction the skull faces.
+     */
+    BlockFace getRotation()
+    {
+        return rotation;
+    }
+
+    /*
+     * Get the type of the skull.
+     */
+    SkullType getSkullType()
+    {
+        return skullType;
+    }
+
+    /*
+     * Get the name of the owner of the head, null if it has none.
+     */
+    String getOwner()
+    {
+        return owner;
     }
 
     /*
@@ -30,12 +64,11 @@ class CreeperHead extends CreeperBlock
     public void update()
     {
         super.update();
-        Skull skull = (Skull) blockState;
-        Skull newSkull = ((Skull) blockState.getBlock().getState());
-        newSkull.setRotation(skull.getRotation());
-        newSkull.setSkullType(skull.getSkullType());
-        if (skull.hasOwner())
-            newSkull.setOwner(skull.getOwner());
+        Skull newSkull = ((Skull) getBlock().getState());
+        newSkull.setRotation(rotation);
+        newSkull.setSkullType(skullType);
+        if (owner != null)
+            newSkull.setOwner(owner);
         newSkull.update(true);
     }
 
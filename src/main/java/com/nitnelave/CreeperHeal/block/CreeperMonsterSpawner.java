@@ -11,12 +11,26 @@ import org.bukkit.block.CreatureSpawner;
 class CreeperMonsterSpawner extends CreeperBlock
 {
 
+    /*
+     * The type of monster spawned.
+     */
+    private final String creature;
+
     /*
      * Constructor.
      */
     protected CreeperMonsterSpawner(CreatureSpawner blockState)
     {
         super(blockState);
+        creature = blockState.getCreatureTypeName();
+    }
+
+    /*
+     * Get the type of monster spawned.
+     */
+    String getCreatureTypeName()
+    {
+        return creature;
     }
 
     /*
@@ -28,6 +42,6 @@ class CreeperMonsterSpawner extends CreeperBlock
     public void update()
     {
         super.update();
-        ((CreatureSpawner) getBlock().getState()).setCreatureTypeByName(((CreatureSpawner) blockState).getCreatureTypeName());
+        ((CreatureSpawner) getBlock().getState()).setCreatureTypeByName(creature);
     }
 }
@@ -11,12 +11,26 @@ import org.bukkit.block.NoteBlock;
 class CreeperNoteBlock extends CreeperBlock
 {
 
+    /*
+     * The note played.
+     */
+    private final byte note;
+
     /*
      * Constructor.
      */
     protected CreeperNoteBlock(NoteBlock blockState)
     {
         super(blockState);
+        note = blockState.getRawNote();
+    }
+
+    /*
+     * Get the note played.
+     */
+    byte getRawNote()
+    {
+        return note;
     }
 
     /*
@@ -28,7 +42,7 @@ class CreeperNoteBlock extends CreeperBlock
     public void update()
     {
         super.update();
-        ((NoteBlock) getBlock().getState()).setRawNote(((NoteBlock) blockState).getRawNote());
+        ((NoteBlock) getBlock().getState()).setRawNote(note);
     }
 
 }
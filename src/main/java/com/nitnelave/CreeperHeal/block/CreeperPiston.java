@@ -21,7 +21,7 @@ class CreeperPiston extends CreeperBlock
      */
     protected CreeperPiston(BlockState blockState)
     {
-        this.blockState = blockState;
+        load(blockState);
         BlockFace face;
         switch (getRawData() & 7)
         {
@@ -46,12 +46,12 @@ class CreeperPiston extends CreeperBlock
         if (blockState.getType().equals(Material.PISTON_EXTENSION))
         {
             extended = true;
-            this.blockState = getBlock().getRelative(face.getOppositeFace()).getState();
+            load(getBlock().getRelative(face.getOppositeFace()).getState());
         }
         else
             extended = (getRawData() & 8) != 0;
         orientation = face;
-        this.blockState.setRawData((byte) (blockState.getRawData() & 7));
+        setRawData((byte) (blockState.getRawData() & 7));
     }
 
     /*
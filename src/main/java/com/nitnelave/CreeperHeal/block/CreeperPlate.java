@@ -8,7 +8,7 @@ class CreeperPlate extends CreeperBlock
     protected CreeperPlate(BlockState blockState)
     {
         super(blockState);
-        blockState.setRawData((byte) 0);
+        setRawData((byte) 0);
     }
 
 }
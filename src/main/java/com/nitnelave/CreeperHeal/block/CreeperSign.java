@@ -11,12 +11,26 @@ import org.bukkit.block.Sign;
 class CreeperSign extends CreeperBlock
 {
 
+    /*
+     * The text of the sign.
+     */
+    private final String[] lines;
+
     /*
      * Constructor.
      */
     protected CreeperSign(Sign sign)
     {
         super(sign);
+        lines = sign.getLines();
+    }
+
+    /*
+     * Get the text of the sign.
+     */
+    String[] getLines()
+    {
+        return lines;
     }
 
     /*
@@ -29,11 +43,10 @@ class CreeperSign extends CreeperBlock
     {
         super.update();
         Sign state = (Sign) getBlock().getState();
-        Sign sign = (Sign) blockState;
         for (int k = 0; k < 4; k++)
-            state.setLine(k, sign.getLine(k));
+            state.setLine(k, lines[k]);
 
-        state.getData().setData(sign.getRawData());
+        state.getData().setData(getRawData());
         state.update(true);
     }
 
@@ -1,86 +1,200 @@
 package com.nitnelave.CreeperHeal.block;
 
+import java.util.List;
+import java.util.PriorityQueue;
+
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.block.BlockFace;
 import org.bukkit.material.Attachable;
 
+import com.nitnelave.CreeperHeal.config.CfgVal;
+import com.nitnelave.CreeperHeal.config.CreeperConfig;
 import com.nitnelave.CreeperHeal.events.CHBlockHealEvent;
 import com.nitnelave.CreeperHeal.events.CHBlockHealEvent.CHBlockHealReason;
+import com.nitnelave.CreeperHeal.utils.CreeperScheduler;
+import com.nitnelave.CreeperHeal.utils.CreeperStats;
 
 /**
- * This class is a task to replace a CreeperBlock later. If the block cannot be
- * safely replaced, then the replacement is postponed. After a numberof tries,
+ * The queue of the blocks whose replacement was delayed. If a block cannot be
+ * safely replaced, then the replacement is postponed. After a number of tries,
  * the block is dropped to the ground.
- * 
+ *
+ * All the delayed blocks are retried by a single task, running only while
+ * blocks are waiting. The blocks are grouped in batches by the tick of their
+ * next try.
+ *
  * @author nitnelave
- * 
+ *
  */
-public class DelayReplacement implements Runnable
+public abstract class DelayReplacement
 {
+    private final static int REPLACEMENT_THRESHOLD = 150;
+
     /*
-     * The block to be replaced.
+     * The batches of blocks waiting, the earliest tick of their next try
+     * first. The interval can change while blocks are waiting, so a batch can
+     * be due before the batches created earlier.
      */
-    private final Replaceable blockState;
-    private final int REPLACEMENT_THRESHOLD = 150;
-    private final CHBlockHealReason reason;
+    private final static PriorityQueue<Batch> queue = new PriorityQueue<Batch>();
+    /*
+     * The last batch created, which the blocks due at the same tick join.
+     */
+    private static Batch last = null;
+
     /*
-     * The number of times a replacement has been attempted.
+     * The number of ticks the task has run for.
      */
-    private int counter;
-    private int id;
+    private static long tick = 0;
+    private static int taskId = -1;
 
     /**
-     * Constructor for a new task.
-     * 
+     * Delay the replacement of a block, and try again every block per block
+     * interval.
+     *
      * @param replaceable
      *            The block to be replaced.
-     * @param replaced
-     *            The number of times a replacement has already been attempted.
      * @param reason
+     *            The reason given to the heal event.
+     */
+    public static void delay(Replaceable replaceable, CHBlockHealReason reason)
+    {
+        CreeperStats.DELAYED.increment();
+        getBatch(tick + CreeperConfig.getInt(CfgVal.BLOCK_PER_BLOCK_INTERVAL)).add(replaceable, 1, reason);
+        if (taskId == -1)
+            taskId = CreeperScheduler.runTaskTimer(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    tick();
+                }
+            }, 1, 1);
+    }
+
+    /*
+     * Get the batch for the tick: the last batch if it is due at the same
+     * tick, or a new one.
      */
-    public DelayReplacement(Replaceable replaceable, int replaced, CHBlockHealReason reason)
+    private static Batch getBatch(long due)
     {
-        blockState = replaceable;
-        counter = replaced + 1;
-        this.reason = reason;
+        if (last != null && last.due == due)
+            return last;
+        last = new Batch(due);
+        queue.add(last);
+        return last;
     }
 
     /*
-     * (non-Javadoc) The task attempts to replace the block, and in case of
-     * failure either re-schedule the replacement for later or drop the block.
+     * Try to replace the blocks that are due, and stop the task when no block
+     * is left.
      */
-    @Override
-    public void run()
+    private static void tick()
     {
-        if (counter < REPLACEMENT_THRESHOLD)
+        tick++;
+        while (!queue.isEmpty() && queue.peek().due <= tick)
         {
-            if ((blockState instanceof Attachable && blockState.getBlock().getRelative(((Attachable) blockState).getAttachedFace()).getType() == Material.AIR)
-                || blockState.getBlock().getRelative(BlockFace.DOWN).getType() == Material.AIR)
-                counter++;
-            else
-            {
-                CHBlockHealEvent event = new CHBlockHealEvent(blockState, true, reason);
-                Bukkit.getPluginManager().callEvent(event);
-                if (!event.isCancelled())
-                    blockState.replace(event.shouldDrop());
-                Bukkit.getScheduler().cancelTask(id);
-            }
+            Batch batch = queue.poll();
+            if (batch == last)
+                last = null;
+            Batch retry = null;
+            for (int i = 0; i < batch.size; i++)
+                if (!tryReplace(batch.items[i], batch.attempts[i], batch.reasons[i]))
+                {
+                    if (retry == null)
+                        retry = getBatch(tick + CreeperConfig.getInt(CfgVal.BLOCK_PER_BLOCK_INTERVAL));
+                    retry.add(batch.items[i], batch.attempts[i] + 1, batch.reasons[i]);
+                }
         }
-        else
+        if (queue.isEmpty())
         {
-            CHBlockHealEvent event = new CHBlockHealEvent(blockState, true, reason);
-            Bukkit.getPluginManager().callEvent(event);
-            if (!event.isCancelled())
-                blockState.replace(event.shouldDrop());
-            Bukkit.getScheduler().cancelTask(id);
+            CreeperScheduler.cancelTask(taskId);
+            taskId = -1;
         }
+    }
+
+    /*
+     * Attempt to replace the block, or drop it if it was attempted too many
+     * times.
+     *
+     * @return False if the block should be tried again later.
+     */
+    private static boolean tryReplace(Replaceable block, int attempts, CHBlockHealReason reason)
+    {
+        if (attempts < REPLACEMENT_THRESHOLD
+            && ((block instanceof Attachable && block.getBlock().getRelative(((Attachable) block).getAttachedFace()).getType() == Material.AIR)
+                || block.getBlock().getRelative(BlockFace.DOWN).getType() == Material.AIR))
+            return false;
+        CHBlockHealEvent event = new CHBlockHealEvent(block, true, reason);
+        Bukkit.getPluginManager().callEvent(event);
+        if (!event.isCancelled())
+            block.replace(event.shouldDrop());
+        return true;
+    }
+
+    /*
+     * Get the number of blocks waiting.
+     */
+    static int size()
+    {
+        int size = 0;
+        for (Batch batch : queue)
+            size += batch.size;
+        return size;
+    }
 
+    /*
+     * Add all the blocks waiting to be replaced to the list.
+     */
+    static void collectPending(List<Replaceable> list)
+    {
+        for (Batch batch : queue)
+            for (int i = 0; i < batch.size; i++)
+                list.add(batch.items[i]);
     }
 
-    public void setId(int id)
+    /*
+     * The blocks to try at the same tick, with the number of times each was
+     * attempted.
+     */
+    private static class Batch implements Comparable<Batch>
     {
-        this.id = id;
+        private final long due;
+        private Replaceable[] items = new Replaceable[8];
+        private int[] attempts = new int[8];
+        private CHBlockHealReason[] reasons = new CHBlockHealReason[8];
+        private int size = 0;
+
+        private Batch(long due)
+        {
+            this.due = due;
+        }
+
+        private void add(Replaceable item, int attempt, CHBlockHealReason reason)
+        {
+            if (size == items.length)
+            {
+                Replaceable[] newItems = new Replaceable[size * 2];
+                System.arraycopy(items, 0, newItems, 0, size);
+                items = newItems;
+                int[] newAttempts = new int[size * 2];
+                System.arraycopy(attempts, 0, newAttempts, 0, size);
+                attempts = newAttempts;
+                CHBlockHealReason[] newReasons = new CHBlockHealReason[size * 2];
+                System.arraycopy(reasons, 0, newReasons, 0, size);
+                reasons = newReasons;
+            }
+            items[size] = item;
+            attempts[size] = attempt;
+            reasons[size] = reason;
+            size++;
+        }
+
+        @Override
+        public int compareTo(Batch other)
+        {
+            return due < other.due ? -1 : due == other.due ? 0 : 1;
+        }
     }
 
 }
@@ -1,8 +1,14 @@
 package com.nitnelave.CreeperHeal.block;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -11,17 +17,17 @@ import org.bukkit.block.Block;
 import org.bukkit.entity.Hanging;
 import org.bukkit.entity.Player;
 import org.bukkit.event.entity.EntityExplodeEvent;
-import org.bukkit.scheduler.BukkitTask;
 
-import com.nitnelave.CreeperHeal.CreeperHeal;
 import com.nitnelave.CreeperHeal.PluginHandler;
 import com.nitnelave.CreeperHeal.config.CfgVal;
 import com.nitnelave.CreeperHeal.config.CreeperConfig;
 import com.nitnelave.CreeperHeal.config.WorldConfig;
 import com.nitnelave.CreeperHeal.events.CHBlockHealEvent.CHBlockHealReason;
 import com.nitnelave.CreeperHeal.events.CHExplosionRecordEvent;
+import com.nitnelave.CreeperHeal.utils.CreeperClock;
+import com.nitnelave.CreeperHeal.utils.CreeperScheduler;
+import com.nitnelave.CreeperHeal.utils.CreeperStats;
 import com.nitnelave.CreeperHeal.utils.NeighborExplosion;
-import java.util.ArrayList;
 
 /**
  * Manager for the explosions list and the explosion index.
@@ -33,9 +39,21 @@ public class ExplodedBlockManager
 {
 
     /*
-     * List of explosions, to replace the blocks.
+     * Set of explosions, to replace the blocks. The explosions are compared by
+     * identity, as their radius changes when they are joined.
+     */
+    private static Set<CreeperExplosion> explosionList =
+            Collections.newSetFromMap(new IdentityHashMap<CreeperExplosion, Boolean>());
+    /*
+     * Explosions waiting for their timer, the earliest first. Joining an
+     * explosion adds a new entry, the old one is ignored when it comes up.
+     */
+    private static PriorityQueue<ScheduledExplosion> schedule = new PriorityQueue<ScheduledExplosion>();
+    /*
+     * Explosions whose timer is over, being replaced, in the order in which
+     * they became due.
      */
-    private static List<CreeperExplosion> explosionList = new LinkedList<CreeperExplosion>();
+    private static List<CreeperExplosion> replacing = new LinkedList<CreeperExplosion>();
     /*
      * Map of the explosions, if the plugin is not in lightweight mode.
      */
@@ -50,14 +68,14 @@ public class ExplodedBlockManager
     /*
      * Block replacement task.
      */
-    private static BukkitTask task;
+    private static int taskId;
 
     public static void init()
     {
         if (CreeperConfig.getBool(CfgVal.LEAVES_VINES))
         {
             explosionIndex = new NeighborExplosion();
-            Bukkit.getScheduler().scheduleSyncRepeatingTask(CreeperHeal.getInstance(), new Runnable()
+            CreeperScheduler.runTaskTimer(new Runnable()
             {
                 @Override
                 public void run()
@@ -88,7 +106,7 @@ public class ExplodedBlockManager
     {
         World w = loc.getWorld();
         LinkedList<CreeperExplosion> pass = new LinkedList<CreeperExplosion>();
-        ListIterator<CreeperExplosion> iter = explosionList.listIterator();
+        Iterator<CreeperExplosion> iter = explosionList.iterator();
         while (iter.hasNext())
         {
             CreeperExplosion ex = iter.next();
@@ -100,6 +118,7 @@ public class ExplodedBlockManager
                 iter.remove();
             }
         }
+        unschedule(pass);
         for (CreeperExplosion ex : pass)
         {
             ex.replace_blocks(true, CHBlockHealReason.FORCED);
@@ -109,6 +128,26 @@ public class ExplodedBlockManager
 
     }
 
+    /*
+     * Remove the explosions replaced before their time from the schedule and
+     * from the explosions being replaced.
+     */
+    private static void unschedule(List<CreeperExplosion> removed)
+    {
+        if (removed.isEmpty())
+            return;
+        Set<CreeperExplosion> set = Collections.newSetFromMap(new IdentityHashMap<CreeperExplosion, Boolean>());
+        set.addAll(removed);
+        Iterator<ScheduledExplosion> iter = schedule.iterator();
+        while (iter.hasNext())
+            if (set.contains(iter.next().explosion))
+                iter.remove();
+        Iterator<CreeperExplosion> ex = replacing.iterator();
+        while (ex.hasNext())
+            if (set.contains(ex.next()))
+                ex.remove();
+    }
+
     /**
      * Force the replacement of all explosions in the specified world.
      * 
@@ -126,7 +165,7 @@ public class ExplodedBlockManager
      */
     public static void forceReplace()
     {
-        ListIterator<CreeperExplosion> iter = explosionList.listIterator();
+        Iterator<CreeperExplosion> iter = explosionList.iterator();
         LinkedList<CreeperExplosion> pass = new LinkedList<CreeperExplosion>();
         while (iter.hasNext())
         {
@@ -135,6 +174,8 @@ public class ExplodedBlockManager
             pass.add(ex);
             iter.remove();
         }
+        schedule.clear();
+        replacing.clear();
         for (CreeperExplosion ex : pass)
         {
             ex.replace_blocks(true, CHBlockHealReason.FORCED);
@@ -190,20 +231,35 @@ public class ExplodedBlockManager
             && CreeperConfig.getBool(CfgVal.JOIN_EXPLOSIONS))
             cEx = explosionIndex.getNeighbor(location);
 
-        if (cEx == null || cEx.hasStartedReplacing())
+        boolean isNew = cEx == null || cEx.hasStartedReplacing();
+        if (isNew)
         {
             cEx = new CreeperExplosion(location);
             explosionList.add(cEx);
-            if (CreeperConfig.getBool(CfgVal.LEAVES_VINES))
-                explosionIndex.addElement(cEx, location.getX(), location.getZ());
         }
+        else
+            CreeperStats.MERGES.increment();
 
+        long due = cEx.getTime();
+        long start = System.nanoTime();
         cEx.addBlocks(processList, location);
+        CreeperStats.CAPTURE.record(System.nanoTime() - start);
+        /*
+         * A joined explosion whose timer did not move already has its entry.
+         */
+        if (!cEx.isTimed() && (isNew || cEx.getTime() != due))
+            schedule.add(new ScheduledExplosion(cEx));
 
         for (CreeperHanging h : hangingList)
             cEx.record(h);
         hangingList.clear();
 
+        /*
+         * The center and radius of a joined explosion moved.
+         */
+        if (CreeperConfig.getBool(CfgVal.LEAVES_VINES))
+            explosionIndex.addElement(cEx);
+
         /*
          * Immediately replace the blocks marked for immediate replacement.
          */
@@ -215,24 +271,72 @@ public class ExplodedBlockManager
      */
     private static void checkReplace()
     { //check to see if any block has to be replaced
-        ListIterator<CreeperExplosion> iter = explosionList.listIterator();
+        long now = CreeperClock.now();
+        ScheduledExplosion next;
+        while ((next = schedule.peek()) != null && next.due <= now)
+        {
+            schedule.poll();
+            if (next.isCurrent())
+                replacing.add(next.explosion);
+        }
+
+        if (!CreeperConfig.getBool(CfgVal.BLOCK_PER_BLOCK)
+            && CreeperConfig.getInt(CfgVal.TICK_BUDGET) > 0)
+        {
+            replaceWithinBudget();
+            return;
+        }
+
+        Iterator<CreeperExplosion> iter = replacing.iterator();
         while (iter.hasNext())
         {
             CreeperExplosion ex = iter.next();
-            if (ex.checkReplace())
+            ex.checkReplace();
+            if (ex.isEmpty())
+            {
+                iter.remove();
+                removeExplosion(ex);
+            }
+        }
+        //        HangingsManager.replaceHangings (new Date ());
+
+    }
+
+    /*
+     * Replace the blocks of the due explosions, until the time allowed for
+     * this tick is spent. The explosions take turns to replace one chunk
+     * section each, the earliest first, and what is left is replaced in the
+     * next ticks.
+     */
+    private static void replaceWithinBudget()
+    {
+        long deadline = System.nanoTime() + 1000L * CreeperConfig.getInt(CfgVal.TICK_BUDGET);
+        while (!replacing.isEmpty())
+        {
+            Iterator<CreeperExplosion> iter = replacing.iterator();
+            while (iter.hasNext())
             {
+                CreeperExplosion ex = iter.next();
+                ex.replaceNextBatch();
                 if (ex.isEmpty())
                 {
                     iter.remove();
-                    if (CreeperConfig.getBool(CfgVal.LEAVES_VINES))
-                        explosionIndex.removeElement(ex);
+                    removeExplosion(ex);
                 }
+                if (System.nanoTime() >= deadline)
+                    return;
             }
-            else
-                break;
         }
-        //        HangingsManager.replaceHangings (new Date ());
+    }
 
+    /*
+     * Remove a fully replaced explosion.
+     */
+    private static void removeExplosion(CreeperExplosion ex)
+    {
+        explosionList.remove(ex);
+        if (CreeperConfig.getBool(CfgVal.LEAVES_VINES))
+            explosionIndex.removeElement(ex);
     }
 
     /**
@@ -254,7 +358,7 @@ public class ExplodedBlockManager
      * Clean the explosion map from useless empty explosions. Do not use when in
      * light weight mode.
      */
-    private static void cleanIndex()
+    static void cleanIndex()
     {
         if (!CreeperConfig.getBool(CfgVal.LEAVES_VINES))
             return;
@@ -287,17 +391,70 @@ public class ExplodedBlockManager
         }
     }
 
+    /**
+     * Count the explosions and the blocks waiting to be replaced in each
+     * world.
+     * 
+     * @param counts
+     *            The map to fill, with the number of explosions and the number
+     *            of blocks by world name.
+     */
+    public static void countPending(Map<String, int[]> counts)
+    {
+        for (CreeperExplosion ex : explosionList)
+        {
+            String name = ex.getLocation().getWorld().getName();
+            int[] c = counts.get(name);
+            if (c == null)
+            {
+                c = new int[2];
+                counts.put(name, c);
+            }
+            c[0]++;
+            c[1] += ex.size();
+        }
+    }
+
+    /*
+     * Put the sizes of the lists and indexes in the map, by name.
+     */
+    static void collectSizes(Map<String, Integer> sizes)
+    {
+        sizes.put("explosions", explosionList.size());
+        sizes.put("scheduled explosions", schedule.size());
+        sizes.put("explosions replacing", replacing.size());
+        sizes.put("hangings", hangingList.size());
+        if (explosionIndex != null)
+            sizes.put("explosion index", explosionIndex.size());
+    }
+
+    /*
+     * Add all the blocks waiting to be replaced to the list.
+     */
+    static void collectPending(List<Replaceable> list)
+    {
+        for (CreeperExplosion ex : explosionList)
+            list.addAll(ex.getBlocks());
+    }
+
     private static void scheduleTask()
     {
-        task = Bukkit.getServer().getScheduler().runTaskTimer(CreeperHeal.getInstance(), new Runnable()
+        long period;
+        if (CreeperConfig.getBool(CfgVal.BLOCK_PER_BLOCK))
+            period = CreeperConfig.getInt(CfgVal.BLOCK_PER_BLOCK_INTERVAL);
+        else
+            //with a time budget, the replacements carry over to the next tick.
+            period = CreeperConfig.getInt(CfgVal.TICK_BUDGET) > 0 ? 1 : 100;
+        taskId = CreeperScheduler.runTaskTimer(new Runnable()
         {
             @Override
             public void run()
             {
+                long start = System.nanoTime();
                 checkReplace(); //check to replace explosions/blocks
+                CreeperStats.EXPLOSIONS.record(System.nanoTime() - start);
             }
-        }, 0, CreeperConfig.getBool(CfgVal.BLOCK_PER_BLOCK) ? CreeperConfig.getInt(CfgVal.BLOCK_PER_BLOCK_INTERVAL)
-                                                           : 100);
+        }, 0, period);
     }
 
     /**
@@ -306,7 +463,38 @@ public class ExplodedBlockManager
      */
     public static void rescheduleTask()
     {
-        task.cancel();
+        CreeperScheduler.cancelTask(taskId);
         scheduleTask();
     }
+
+    /*
+     * An entry in the schedule : the explosion, and the time at which it was
+     * due when the entry was added.
+     */
+    private static class ScheduledExplosion implements Comparable<ScheduledExplosion>
+    {
+        private final CreeperExplosion explosion;
+        private final long due;
+
+        private ScheduledExplosion(CreeperExplosion explosion)
+        {
+            this.explosion = explosion;
+            due = explosion.getTime();
+        }
+
+        /*
+         * Get whether the explosion's timer was not reset since the entry was
+         * added.
+         */
+        private boolean isCurrent()
+        {
+            return explosion.getTime() == due;
+        }
+
+        @Override
+        public int compareTo(ScheduledExplosion other)
+        {
+            return due < other.due ? -1 : due == other.due ? 0 : 1;
+        }
+    }
 }
@@ -1,13 +1,11 @@
 package com.nitnelave.CreeperHeal.block;
 
-import java.util.Date;
-
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 
-import com.nitnelave.CreeperHeal.CreeperHeal;
 import com.nitnelave.CreeperHeal.config.CfgVal;
 import com.nitnelave.CreeperHeal.config.CreeperConfig;
+import com.nitnelave.CreeperHeal.utils.CreeperClock;
+import com.nitnelave.CreeperHeal.utils.CreeperScheduler;
 import com.nitnelave.CreeperHeal.utils.DateLoc;
 import com.nitnelave.CreeperHeal.utils.NeighborDateLoc;
 
@@ -27,7 +25,7 @@ public class FallIndex
 
     static
     {
-        Bukkit.getScheduler().scheduleSyncRepeatingTask(CreeperHeal.getInstance(), new Runnable()
+        CreeperScheduler.runTaskTimer(new Runnable()
         {
             @Override
             public void run()
@@ -60,15 +58,23 @@ public class FallIndex
     public static void putFallPrevention(Location location)
     {
         if (CreeperConfig.getBool(CfgVal.PREVENT_BLOCK_FALL))
-            index.addElement(new DateLoc(new Date(), location), location.getX(), location.getZ());
+            index.addElement(new DateLoc(CreeperClock.now(), location));
     }
 
     /*
      * Clean up by removing the unnecessary blocks from the fall and update
      * indexes.
      */
-    private static void cleanUp()
+    static void cleanUp()
     {
         index.clean();
     }
+
+    /*
+     * Get the number of blocks whose fall is prevented.
+     */
+    static int size()
+    {
+        return index.size();
+    }
 }
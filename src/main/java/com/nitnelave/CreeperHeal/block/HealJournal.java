@@ -0,0 +1,749 @@
+package com.nitnelave.CreeperHeal.block;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Bukkit;
+import org.bukkit.SkullType;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.CreatureSpawner;
+import org.bukkit.block.NoteBlock;
+import org.bukkit.block.Sign;
+import org.bukkit.block.Skull;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+
+import com.nitnelave.CreeperHeal.CreeperHeal;
+import com.nitnelave.CreeperHeal.config.CfgVal;
+import com.nitnelave.CreeperHeal.config.CreeperConfig;
+import com.nitnelave.CreeperHeal.utils.CreeperLog;
+import com.nitnelave.CreeperHeal.utils.CreeperScheduler;
+
+/**
+ * Append-only journal of the blocks waiting to be healed, so that a crash of
+ * the server does not lose the damage still in memory. Every recorded block is
+ * appended to the journal. The records are buffered in memory and written to
+ * the disk by a background thread, which syncs them in batches. Every time the
+ * worlds are saved, the journal is compacted to the blocks still waiting.
+ * Heals are not journaled: a block healed since the last save is lost with the
+ * world in a crash, so it must be replaced again. On startup, the blocks of
+ * the journal are replaced where nothing was placed since, or when their world
+ * is loaded.
+ *
+ * @author nitnelave
+ *
+ */
+public abstract class HealJournal
+{
+
+    private static final int MAGIC = 0x43484a32;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    /*
+     * Record types.
+     */
+    private static final byte WORLD = 0, RECORD = 1;
+    /*
+     * Payload types, for the blocks holding more than a type and data.
+     */
+    private static final byte NO_PAYLOAD = 0, SIGN = 1, INVENTORY = 2, SPAWNER = 3, NOTE = 4, SKULL = 5;
+    /*
+     * Minimum time between two compactions, in ms. All the worlds are saved at
+     * the same time, only the first save event triggers a compaction.
+     */
+    private static final long CHECKPOINT_INTERVAL = 1000;
+    /*
+     * Delay before a new checkpoint is taken when the journal could not be
+     * written, in ticks.
+     */
+    private static final long RETRY_DELAY = 20 * 10;
+
+    private static final Object lock = new Object();
+    private static final Map<String, Integer> worldIds = new HashMap<String, Integer>();
+    /*
+     * The blocks of the last run whose world is not loaded yet.
+     */
+    private static final List<Snapshot> unloaded = new ArrayList<Snapshot>();
+    private static ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private static DataOutputStream out = new DataOutputStream(buffer);
+    private static byte[] pendingCheckpoint = null;
+    private static boolean running = false;
+    private static long lastCheckpoint = 0;
+    private static File journalFile;
+    private static FileOutputStream stream;
+    private static Thread writer;
+
+    /**
+     * Replay the journal left by the last run, and start the journal for this
+     * run. Nothing happens if the journal is disabled.
+     */
+    public static void init()
+    {
+        if (!CreeperConfig.getBool(CfgVal.JOURNAL))
+            return;
+        journalFile = new File(CreeperHeal.getCHFolder() + "/journal.dat");
+        List<Snapshot> remaining = replay();
+
+        synchronized (lock)
+        {
+            unloaded.clear();
+            unloaded.addAll(remaining);
+            try
+            {
+                pendingCheckpoint = buildCheckpoint(new ArrayList<Replaceable>());
+            } catch (IOException e)
+            {
+                CreeperLog.warning("Could not start the heal journal : " + e.getMessage());
+            }
+            running = true;
+        }
+        writer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                writeLoop();
+            }
+        }, "CreeperHeal journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Flush the journal to the disk and stop the writer thread. Should be
+     * called after every block has been replaced.
+     */
+    public static void close()
+    {
+        if (!isEnabled())
+            return;
+        checkpoint(true);
+        synchronized (lock)
+        {
+            running = false;
+            lock.notifyAll();
+        }
+        try
+        {
+            writer.join();
+        } catch (InterruptedException e)
+        {
+            CreeperLog.warning("Interrupted while closing the heal journal");
+        }
+    }
+
+    /*
+     * Whether the journal is currently written.
+     */
+    private static boolean isEnabled()
+    {
+        synchronized (lock)
+        {
+            return running;
+        }
+    }
+
+    /**
+     * Append a recorded block to the journal.
+     *
+     * @param block
+     *            The block that was recorded.
+     */
+    protected static void logRecord(Replaceable block)
+    {
+        if (!(block instanceof CreeperBlock))
+            return;
+        synchronized (lock)
+        {
+            if (!running)
+                return;
+            try
+            {
+                writeRecord(out, (CreeperBlock) block);
+            } catch (IOException e)
+            {
+                CreeperLog.warning("Could not write to the heal journal : " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Compact the journal, by replacing it with the list of the blocks still
+     * waiting to be replaced.
+     *
+     * @param force
+     *            If false, the compaction is skipped if one was done very
+     *            recently.
+     */
+    public static void checkpoint(boolean force)
+    {
+        if (!isEnabled())
+            return;
+        long now = System.currentTimeMillis();
+        if (!force && now - lastCheckpoint < CHECKPOINT_INTERVAL)
+            return;
+        lastCheckpoint = now;
+
+        List<Replaceable> pending = new ArrayList<Replaceable>();
+        ExplodedBlockManager.collectPending(pending);
+        BurntBlockManager.collectPending(pending);
+        ToReplaceList.collectPending(pending);
+        DelayReplacement.collectPending(pending);
+
+        synchronized (lock)
+        {
+            try
+            {
+                pendingCheckpoint = buildCheckpoint(pending);
+            } catch (IOException e)
+            {
+                CreeperLog.warning("Could not compact the heal journal : " + e.getMessage());
+                return;
+            }
+            /*
+             * Everything in the buffer is superseded by the checkpoint.
+             */
+            buffer.reset();
+            lock.notifyAll();
+        }
+    }
+
+    /*
+     * Build the content of a new journal: the blocks waiting to be replaced,
+     * and the blocks of the last run whose world is not loaded yet. Must be
+     * called with the lock held.
+     */
+    private static byte[] buildCheckpoint(List<Replaceable> pending) throws IOException
+    {
+        worldIds.clear();
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        DataOutputStream o = new DataOutputStream(b);
+        o.writeInt(MAGIC);
+        for (Replaceable r : pending)
+            if (r instanceof CreeperBlock)
+                writeRecord(o, (CreeperBlock) r);
+        for (Snapshot s : unloaded)
+            s.write(o);
+        return b.toByteArray();
+    }
+
+    /**
+     * Replace the blocks left in the journal by the last run in a world that
+     * was not loaded on startup. They are kept in the journal until then.
+     *
+     * @param world
+     *            The world that was just loaded.
+     */
+    public static void replayWorld(World world)
+    {
+        List<Snapshot> blocks = new ArrayList<Snapshot>();
+        synchronized (lock)
+        {
+            Iterator<Snapshot> iter = unloaded.iterator();
+            while (iter.hasNext())
+            {
+                Snapshot s = iter.next();
+                if (s.world.equals(world.getName()))
+                {
+                    blocks.add(s);
+                    iter.remove();
+                }
+            }
+        }
+        int replayed = 0;
+        for (Snapshot s : blocks)
+            if (s.replace(world))
+                replayed++;
+        if (replayed > 0)
+            CreeperLog.logInfo("Replaced " + replayed + " blocks left in the heal journal in " + world.getName(), 1);
+    }
+
+    /*
+     * Body of the writer thread : every flush interval, write the records
+     * accumulated since the last flush, and sync them to the disk. If the
+     * journal cannot be written, the records are dropped until a new
+     * checkpoint, which holds all of them, is written in a new file.
+     */
+    private static void writeLoop()
+    {
+        long interval = Math.max(1, CreeperConfig.getInt(CfgVal.JOURNAL_FLUSH_INTERVAL));
+        boolean stop = false, broken = false;
+        while (!stop)
+        {
+            byte[] checkpoint, data = null;
+            synchronized (lock)
+            {
+                if (running)
+                    try
+                    {
+                        lock.wait(interval);
+                    } catch (InterruptedException e)
+                    {
+                        running = false;
+                    }
+                stop = !running;
+                checkpoint = pendingCheckpoint;
+                pendingCheckpoint = null;
+                if (buffer.size() != 0)
+                {
+                    data = buffer.toByteArray();
+                    buffer.reset();
+                }
+            }
+            if (checkpoint == null && (broken || data == null))
+                continue;
+            try
+            {
+                if (checkpoint != null)
+                    rewrite(checkpoint);
+                broken = false;
+                if (data != null)
+                {
+                    stream.write(data);
+                    stream.getChannel().force(false);
+                }
+            } catch (IOException e)
+            {
+                CreeperLog.warning("Could not write to the heal journal, rewriting it in " + RETRY_DELAY / 20
+                                   + " seconds : " + e.getMessage());
+                broken = true;
+                closeStream();
+                if (!stop)
+                    CreeperScheduler.runTaskLater(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            checkpoint(true);
+                        }
+                    }, RETRY_DELAY);
+            }
+        }
+        closeStream();
+    }
+
+    /*
+     * Close the journal file, if it is open.
+     */
+    private static void closeStream()
+    {
+        try
+        {
+            if (stream != null)
+                stream.close();
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        stream = null;
+    }
+
+    /*
+     * Replace the journal file with the checkpoint, and reopen it for
+     * appending.
+     */
+    private static void rewrite(byte[] checkpoint) throws IOException
+    {
+        closeStream();
+        File tmp = new File(journalFile.getPath() + ".tmp");
+        FileOutputStream o = new FileOutputStream(tmp);
+        try
+        {
+            o.write(checkpoint);
+            o.getChannel().force(false);
+        } finally
+        {
+            o.close();
+        }
+        if (!tmp.renameTo(journalFile))
+        {
+            journalFile.delete();
+            if (!tmp.renameTo(journalFile))
+                throw new IOException("Cannot rename " + tmp.getPath());
+        }
+        stream = new FileOutputStream(journalFile, true);
+    }
+
+    /*
+     * Get the id of a world in the journal, defining it if necessary.
+     */
+    private static int getWorldId(DataOutputStream o, String name) throws IOException
+    {
+        Integer id = worldIds.get(name);
+        if (id == null)
+        {
+            id = worldIds.size();
+            worldIds.put(name, id);
+            o.writeByte(WORLD);
+            o.writeShort(id);
+            o.writeUTF(name);
+        }
+        return id;
+    }
+
+    /*
+     * Write a block record. The other half of a double chest is recorded as
+     * a separate block.
+     */
+    private static void writeRecord(DataOutputStream o, CreeperBlock block) throws IOException
+    {
+        new Snapshot(block).write(o);
+        if (block instanceof CreeperChest)
+        {
+            CreeperChest chest = (CreeperChest) block;
+            NeighborChest neighbor = chest.getNeighbor();
+            if (neighbor != null)
+                new Snapshot(neighbor.getChest(), chest.getNeighborInventory()).write(o);
+        }
+    }
+
+    /*
+     * Read the journal left by the previous run, and replace its blocks where
+     * nothing was placed since. Return the blocks that could not be replaced
+     * because their world is not loaded.
+     */
+    private static List<Snapshot> replay()
+    {
+        List<Snapshot> remaining = new ArrayList<Snapshot>();
+        if (!journalFile.exists())
+            return remaining;
+
+        Map<String, Snapshot> pending = new LinkedHashMap<String, Snapshot>();
+        DataInputStream in;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+        } catch (FileNotFoundException e)
+        {
+            return remaining;
+        }
+        try
+        {
+            if (in.readInt() != MAGIC)
+            {
+                CreeperLog.warning("Invalid heal journal, ignoring it");
+                return remaining;
+            }
+            List<String> worlds = new ArrayList<String>();
+            while (true)
+            {
+                byte type = in.readByte();
+                if (type == WORLD)
+                {
+                    int id = in.readShort();
+                    String name = in.readUTF();
+                    while (worlds.size() <= id)
+                        worlds.add(null);
+                    worlds.set(id, name);
+                }
+                else if (type == RECORD)
+                {
+                    Snapshot s = Snapshot.read(in, worlds);
+                    pending.put(s.getKey(), s);
+                }
+                else
+                    throw new IOException("Unknown record type : " + type);
+            }
+        } catch (EOFException e)
+        {
+            //end of the journal, possibly with a record cut by a crash.
+        } catch (IOException e)
+        {
+            CreeperLog.warning("Error while reading the heal journal : " + e.getMessage());
+        } finally
+        {
+            try
+            {
+                in.close();
+            } catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+
+        int replayed = 0;
+        Iterator<Snapshot> iter = pending.values().iterator();
+        while (iter.hasNext())
+        {
+            Snapshot s = iter.next();
+            World w = Bukkit.getWorld(s.world);
+            if (w == null)
+                remaining.add(s);
+            else if (s.replace(w))
+                replayed++;
+        }
+        if (replayed > 0)
+            CreeperLog.logInfo("Replaced " + replayed + " blocks left in the heal journal", 1);
+        if (!remaining.isEmpty())
+            CreeperLog.warning(remaining.size() + " blocks in the heal journal belong to unloaded worlds,"
+                               + " keeping them until the worlds load");
+        return remaining;
+    }
+
+    /*
+     * Content of a block record.
+     */
+    private static class Snapshot
+    {
+        private final String world;
+        private final int x, y, z, typeId;
+        private final byte data;
+        private byte payload = NO_PAYLOAD;
+        private String[] lines;
+        private ItemStack[] inventory;
+        private String creature;
+        private byte note;
+        private BlockFace rotation;
+        private SkullType skullType;
+        private String owner;
+
+        /*
+         * Capture a recorded block, with the content of its tile entity.
+         */
+        private Snapshot(CreeperBlock block)
+        {
+            this(block.getWorld().getName(), block.getX(), block.getY(), block.getZ(), block.getTypeId(),
+                 block.getRawData());
+            if (block instanceof CreeperChest)
+            {
+                payload = INVENTORY;
+                inventory = ((CreeperChest) block).getStoredInventory();
+            }
+            else if (block instanceof CreeperSign)
+            {
+                payload = SIGN;
+                lines = ((CreeperSign) block).getLines();
+            }
+            else if (block instanceof CreeperMonsterSpawner)
+            {
+                payload = SPAWNER;
+                creature = ((CreeperMonsterSpawner) block).getCreatureTypeName();
+            }
+            else if (block instanceof CreeperNoteBlock)
+            {
+                payload = NOTE;
+                note = ((CreeperNoteBlock) block).getRawNote();
+            }
+            else if (block instanceof CreeperHead)
+            {
+                CreeperHead head = (CreeperHead) block;
+                payload = SKULL;
+                rotation = head.getRotation();
+                skullType = head.getSkullType();
+                owner = head.getOwner();
+            }
+        }
+
+        /*
+         * Capture the other half of a double chest. The inventory is given
+         * separately, as the state's inventory is cleared when the block is
+         * removed.
+         */
+        private Snapshot(BlockState state, ItemStack[] inventory)
+        {
+            this(state.getWorld().getName(), state.getX(), state.getY(), state.getZ(), state.getTypeId(),
+                 state.getRawData());
+            payload = INVENTORY;
+            this.inventory = inventory;
+        }
+
+        private Snapshot(String world, int x, int y, int z, int typeId, byte data)
+        {
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.typeId = typeId;
+            this.data = data;
+        }
+
+        private String getKey()
+        {
+            return world + ';' + x + ';' + y + ';' + z;
+        }
+
+        private void write(DataOutputStream o) throws IOException
+        {
+            int id = getWorldId(o, world);
+            o.writeByte(RECORD);
+            o.writeShort(id);
+            o.writeInt(x);
+            o.writeInt(y);
+            o.writeInt(z);
+            o.writeShort(typeId);
+            o.writeByte(data);
+            o.writeByte(payload);
+            switch (payload)
+            {
+            case SIGN:
+                for (int i = 0; i < 4; i++)
+                    o.writeUTF(lines[i]);
+                break;
+            case INVENTORY:
+                writeInventory(o, inventory);
+                break;
+            case SPAWNER:
+                o.writeUTF(creature);
+                break;
+            case NOTE:
+                o.writeByte(note);
+                break;
+            case SKULL:
+                o.writeUTF(rotation.name());
+                o.writeUTF(skullType.name());
+                o.writeBoolean(owner != null);
+                if (owner != null)
+                    o.writeUTF(owner);
+                break;
+            default:
+            }
+        }
+
+        /*
+         * Write the items with their serialized form, to keep their meta
+         * (enchantments, names, lore, book contents...). The items are
+         * stored by slot in a yaml document.
+         */
+        private static void writeInventory(DataOutputStream o, ItemStack[] inventory) throws IOException
+        {
+            YamlConfiguration items = new YamlConfiguration();
+            for (int i = 0; i < inventory.length; i++)
+                if (inventory[i] != null)
+                    items.set(String.valueOf(i), inventory[i]);
+            byte[] bytes = items.saveToString().getBytes(UTF8);
+            o.writeInt(bytes.length);
+            o.write(bytes);
+        }
+
+        private static ItemStack[] readInventory(DataInputStream in) throws IOException
+        {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            YamlConfiguration items = new YamlConfiguration();
+            try
+            {
+                items.loadFromString(new String(bytes, UTF8));
+            } catch (InvalidConfigurationException e)
+            {
+                throw new IOException("Invalid inventory : " + e.getMessage());
+            }
+            List<ItemStack> stacks = new ArrayList<ItemStack>();
+            for (String key : items.getKeys(false))
+            {
+                int slot = Integer.parseInt(key);
+                while (stacks.size() <= slot)
+                    stacks.add(null);
+                stacks.set(slot, items.getItemStack(key));
+            }
+            return stacks.toArray(new ItemStack[stacks.size()]);
+        }
+
+        private static Snapshot read(DataInputStream in, List<String> worlds) throws IOException
+        {
+            Snapshot s = new Snapshot(worlds.get(in.readShort()), in.readInt(), in.readInt(), in.readInt(), in.readShort(), in.readByte());
+            s.payload = in.readByte();
+            switch (s.payload)
+            {
+            case SIGN:
+                s.lines = new String[4];
+                for (int i = 0; i < 4; i++)
+                    s.lines[i] = in.readUTF();
+                break;
+            case INVENTORY:
+                s.inventory = readInventory(in);
+                break;
+            case SPAWNER:
+                s.creature = in.readUTF();
+                break;
+            case NOTE:
+                s.note = in.readByte();
+                break;
+            case SKULL:
+                try
+                {
+                    s.rotation = BlockFace.valueOf(in.readUTF());
+                    s.skullType = SkullType.valueOf(in.readUTF());
+                } catch (IllegalArgumentException e)
+                {
+                    throw new IOException("Invalid skull : " + e.getMessage());
+                }
+                s.owner = in.readBoolean() ? in.readUTF() : null;
+                break;
+            default:
+            }
+            return s;
+        }
+
+        /*
+         * Put the block back in the world, if nothing was placed there since.
+         * The block is then updated like a normal replacement, to place the
+         * other half of doors and beds.
+         */
+        private boolean replace(World w)
+        {
+            Block block = w.getBlockAt(x, y, z);
+            if (!CreeperBlock.isEmpty(block.getTypeId()))
+                return false;
+            block.setTypeIdAndData(typeId, data, false);
+            CreeperBlock cBlock = CreeperBlock.newBlock(block.getState());
+            if (cBlock != null)
+                cBlock.update();
+
+            BlockState state = block.getState();
+            switch (payload)
+            {
+            case SIGN:
+                for (int i = 0; i < 4; i++)
+                    ((Sign) state).setLine(i, lines[i]);
+                state.update(true);
+                break;
+            case INVENTORY:
+                if (state instanceof InventoryHolder)
+                {
+                    ItemStack[] contents = ((InventoryHolder) state).getInventory().getContents();
+                    System.arraycopy(inventory, 0, contents, 0, Math.min(inventory.length, contents.length));
+                    ((InventoryHolder) state).getInventory().setContents(contents);
+                }
+                break;
+            case SPAWNER:
+                ((CreatureSpawner) state).setCreatureTypeByName(creature);
+                state.update(true);
+                break;
+            case NOTE:
+                ((NoteBlock) state).setRawNote(note);
+                state.update(true);
+                break;
+            case SKULL:
+                Skull skull = (Skull) state;
+                skull.setRotation(rotation);
+                skull.setSkullType(skullType);
+                if (owner != null)
+                    skull.setOwner(owner);
+                state.update(true);
+                break;
+            default:
+            }
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,217 @@
+package com.nitnelave.CreeperHeal.block;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.bukkit.Location;
+import org.bukkit.block.BlockFace;
+
+import com.nitnelave.CreeperHeal.utils.LongHashMap;
+import com.nitnelave.CreeperHeal.utils.PackedLocation;
+
+/**
+ * The order in which the blocks of an explosion are replaced. Every block
+ * waits for the blocks of the explosion it is attached to (its supports), and
+ * is released as soon as they are all replaced. Among the released blocks, the
+ * first one in the order they were given in is replaced first.
+ *
+ * The supports of a block are found from its attaching face, like for the
+ * NeighborBlock: an ascending rail also waits for the block it climbs on.
+ * Supports that are not part of the explosion are not waited for.
+ *
+ * @author nitnelave
+ *
+ */
+class HealPlan
+{
+
+    /*
+     * The blocks of the plan, by packed position, so that their dependents
+     * can find them.
+     */
+    private final LongHashMap<Node> positions = new LongHashMap<Node>();
+    /*
+     * All the nodes, in order. The ones before the cursor are all released.
+     */
+    private final List<Node> nodes = new ArrayList<Node>();
+    private int cursor = 0;
+    private final PriorityQueue<Node> ready = new PriorityQueue<Node>();
+    private int pending = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param blocks
+     *            The blocks to replace, in the preferred order.
+     */
+    HealPlan(Collection<Replaceable> blocks)
+    {
+        addAll(blocks);
+    }
+
+    /*
+     * Add blocks at the end of the plan. The blocks already released do not
+     * wait for the new ones.
+     */
+    void addAll(Collection<Replaceable> blocks)
+    {
+        int first = nodes.size();
+        for (Replaceable block : blocks)
+        {
+            Node node = new Node(block, nodes.size());
+            nodes.add(node);
+            if (block instanceof CreeperBlock)
+                positions.put(node.position, node);
+        }
+        /*
+         * Link the new blocks once they are all known, as a block can be
+         * recorded before its support.
+         */
+        for (int i = first; i < nodes.size(); i++)
+        {
+            Node node = nodes.get(i);
+            waitFor(node, node.block.getAttachingFace());
+            if (node.block instanceof CreeperRail && ((CreeperRail) node.block).isAscending())
+                waitFor(node, BlockFace.DOWN);
+            if (node.waiting == 0)
+                ready.add(node);
+        }
+        pending += nodes.size() - first;
+    }
+
+    /*
+     * Make the block wait for the block next to it, if it is still to be
+     * replaced.
+     */
+    private void waitFor(Node node, BlockFace face)
+    {
+        if (face == BlockFace.SELF)
+            return;
+        long support = PackedLocation.pack(PackedLocation.getX(node.position) + face.getModX(),
+                                           PackedLocation.getY(node.position) + face.getModY(),
+                                           PackedLocation.getZ(node.position) + face.getModZ());
+        Node s = positions.get(support);
+        if (s == null || s == node || s.released)
+            return;
+        if (s.dependents == null)
+            s.dependents = new ArrayList<Node>(2);
+        s.dependents.add(node);
+        node.waiting++;
+    }
+
+    /*
+     * Get the next block to replace, without removing it, or null if the plan
+     * is empty.
+     */
+    Replaceable peek()
+    {
+        Node node = next();
+        return node == null ? null : node.block;
+    }
+
+    /*
+     * Remove the next block to replace, and release the blocks that depend on
+     * it. The block should be replaced before the next one is polled.
+     */
+    Replaceable poll()
+    {
+        Node node = next();
+        if (node == null)
+            return null;
+        ready.poll();
+        node.released = true;
+        pending--;
+        if (positions.get(node.position) == node)
+            positions.remove(node.position);
+        if (node.dependents != null)
+            for (Node d : node.dependents)
+                if (--d.waiting == 0)
+                    ready.add(d);
+        node.dependents = null;
+        return node.block;
+    }
+
+    /*
+     * Get the first released block. If every remaining block waits for
+     * another one (the attachments form a loop), the first remaining block is
+     * released anyway.
+     */
+    private Node next()
+    {
+        if (ready.isEmpty())
+        {
+            if (pending == 0)
+                return null;
+            while (nodes.get(cursor).released)
+                cursor++;
+            Node node = nodes.get(cursor);
+            node.waiting = 0;
+            ready.add(node);
+        }
+        return ready.peek();
+    }
+
+    /*
+     * Get the number of blocks not released yet.
+     */
+    int size()
+    {
+        return pending;
+    }
+
+    /*
+     * Get whether every block was released.
+     */
+    boolean isEmpty()
+    {
+        return pending == 0;
+    }
+
+    /*
+     * Add the blocks not released yet to the list.
+     */
+    void collectPending(List<Replaceable> list)
+    {
+        for (int i = cursor; i < nodes.size(); i++)
+            if (!nodes.get(i).released)
+                list.add(nodes.get(i).block);
+    }
+
+    /*
+     * A block, with the blocks it waits for and the ones waiting for it.
+     */
+    private static class Node implements Comparable<Node>
+    {
+        private final Replaceable block;
+        private final long position;
+        private final int order;
+        private int waiting = 0;
+        private boolean released = false;
+        private List<Node> dependents = null;
+
+        private Node(Replaceable block, int order)
+        {
+            this.block = block;
+            this.order = order;
+            if (block instanceof CreeperBlock)
+            {
+                CreeperBlock cb = (CreeperBlock) block;
+                position = PackedLocation.pack(cb.getX(), cb.getY(), cb.getZ());
+            }
+            else
+            {
+                Location l = block.getLocation();
+                position = PackedLocation.pack(l.getBlockX(), l.getBlockY(), l.getBlockZ());
+            }
+        }
+
+        @Override
+        public int compareTo(Node o)
+        {
+            return order - o.order;
+        }
+    }
+
+}
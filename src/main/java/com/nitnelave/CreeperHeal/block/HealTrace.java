@@ -0,0 +1,253 @@
+package com.nitnelave.CreeperHeal.block;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Hanging;
+import org.bukkit.entity.ItemFrame;
+
+import com.nitnelave.CreeperHeal.events.CHExplosionRecordEvent.ExplosionReason;
+import com.nitnelave.CreeperHeal.utils.CreeperLog;
+import com.nitnelave.CreeperHeal.utils.CreeperScheduler;
+import com.nitnelave.CreeperHeal.utils.LongHashSet;
+import com.nitnelave.CreeperHeal.utils.PackedLocation;
+
+/**
+ * Recorder of the explosions, burnt blocks and broken hangings handled by the
+ * plugin, to replay them later off the server. The trace is a gzipped binary
+ * file: every record has the tick at which it happened (counted from the
+ * start of the recording), the types of the destroyed blocks, and the types
+ * of the blocks around them, so that the blocks depending on them are
+ * reproduced. The content of chests and signs is not recorded.
+ *
+ * The traces are only replayed in the memory worlds of the tests, since the
+ * replay overwrites the blocks of the world it runs in.
+ *
+ * @author nitnelave
+ *
+ */
+public abstract class HealTrace
+{
+
+    static final int MAGIC = 0x43485431;
+    /*
+     * Record types.
+     */
+    static final byte WORLD = 0, EXPLOSION = 1, BURN = 2, HANGING = 3;
+    private static final BlockFace[] FACES = {BlockFace.UP, BlockFace.DOWN, BlockFace.NORTH,
+                                              BlockFace.SOUTH, BlockFace.EAST, BlockFace.WEST};
+
+    private static DataOutputStream out = null;
+    private static final Map<String, Integer> worldIds = new HashMap<String, Integer>();
+    private static int tick = 0;
+    private static int tickTask = -1;
+
+    /**
+     * Get whether a trace is being recorded.
+     *
+     * @return True if a trace is being recorded.
+     */
+    public static boolean isRecording()
+    {
+        return out != null;
+    }
+
+    /**
+     * Start recording a trace to the file, overwriting it. A trace already
+     * being recorded is closed first.
+     *
+     * @param file
+     *            The file to write the trace to.
+     * @throws IOException
+     *             If the file cannot be written.
+     */
+    public static void start(File file) throws IOException
+    {
+        stop();
+        out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file)), 1 << 16));
+        out.writeInt(MAGIC);
+        worldIds.clear();
+        tick = 0;
+        tickTask = CreeperScheduler.runTaskTimer(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                tick++;
+            }
+        }, 1, 1);
+    }
+
+    /**
+     * Stop recording, and close the trace.
+     */
+    public static void stop()
+    {
+        if (out == null)
+            return;
+        CreeperScheduler.cancelTask(tickTask);
+        try
+        {
+            out.close();
+        } catch (IOException e)
+        {
+            CreeperLog.warning("[Trace] Could not close the trace : " + e.getMessage());
+        }
+        out = null;
+    }
+
+    /**
+     * Record an explosion, if a trace is being recorded.
+     *
+     * @param blocks
+     *            The blocks destroyed by the explosion.
+     * @param location
+     *            The location of the explosion.
+     * @param reason
+     *            The cause of the explosion.
+     */
+    public static void recordExplosion(List<Block> blocks, Location location, ExplosionReason reason)
+    {
+        if (out == null)
+            return;
+        try
+        {
+            writeHeader(EXPLOSION, location.getWorld());
+            out.writeDouble(location.getX());
+            out.writeDouble(location.getY());
+            out.writeDouble(location.getZ());
+            out.writeByte(reason.ordinal());
+            out.writeInt(blocks.size());
+            LongHashSet positions = new LongHashSet(blocks.size());
+            for (Block b : blocks)
+            {
+                writeBlock(b);
+                positions.add(PackedLocation.pack(b));
+            }
+            writeSurroundings(blocks, positions);
+        } catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    /**
+     * Record a burnt block, if a trace is being recorded.
+     *
+     * @param block
+     *            The block burnt.
+     */
+    public static void recordBurn(Block block)
+    {
+        if (out == null)
+            return;
+        try
+        {
+            writeHeader(BURN, block.getWorld());
+            writeBlock(block);
+            LongHashSet positions = new LongHashSet(8);
+            positions.add(PackedLocation.pack(block));
+            List<Block> list = new ArrayList<Block>(1);
+            list.add(block);
+            writeSurroundings(list, positions);
+        } catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    /**
+     * Record a broken hanging, if a trace is being recorded.
+     *
+     * @param hanging
+     *            The hanging broken.
+     * @param explosion
+     *            Whether it was broken by an explosion, or by a fire.
+     */
+    public static void recordHanging(Hanging hanging, boolean explosion)
+    {
+        if (out == null)
+            return;
+        try
+        {
+            writeHeader(HANGING, hanging.getWorld());
+            out.writeLong(PackedLocation.pack(hanging.getLocation().getBlock()));
+            out.writeBoolean(hanging instanceof ItemFrame);
+            out.writeByte(hanging.getFacing().ordinal());
+            out.writeBoolean(explosion);
+        } catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    /*
+     * Write the type of record, the tick and the world, declaring the world
+     * the first time it appears.
+     */
+    private static void writeHeader(byte type, World world) throws IOException
+    {
+        Integer id = worldIds.get(world.getName());
+        if (id == null)
+        {
+            id = worldIds.size();
+            worldIds.put(world.getName(), id);
+            out.writeByte(WORLD);
+            out.writeUTF(world.getName());
+        }
+        out.writeByte(type);
+        out.writeInt(tick);
+        out.writeShort(id);
+    }
+
+    /*
+     * Write the position, type and data of a block.
+     */
+    private static void writeBlock(Block block) throws IOException
+    {
+        out.writeLong(PackedLocation.pack(block));
+        out.writeShort(block.getTypeId());
+        out.writeByte(block.getData());
+    }
+
+    /*
+     * Write the blocks next to the blocks, except the ones already in the
+     * set.
+     */
+    private static void writeSurroundings(List<Block> blocks, LongHashSet positions) throws IOException
+    {
+        List<Block> around = new ArrayList<Block>();
+        for (Block b : blocks)
+            for (BlockFace face : FACES)
+            {
+                Block n = b.getRelative(face);
+                if (positions.add(PackedLocation.pack(n)))
+                    around.add(n);
+            }
+        out.writeInt(around.size());
+        for (Block b : around)
+            writeBlock(b);
+    }
+
+    /*
+     * Stop recording after an error.
+     */
+    private static void fail(IOException e)
+    {
+        CreeperLog.warning("[Trace] Could not write the trace, recording stopped : " + e.getMessage());
+        stop();
+    }
+
+}
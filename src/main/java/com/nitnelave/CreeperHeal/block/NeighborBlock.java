@@ -46,6 +46,15 @@ public class NeighborBlock
      *         constructor.
      */
     public boolean isNeighbor()
+    {
+        return isNeighbor(block, face);
+    }
+
+    /*
+     * Check if the block depends on the block next to it, in the opposite
+     * direction of the face.
+     */
+    static boolean isNeighbor(CreeperBlock block, BlockFace face)
     {
         if (block instanceof CreeperRail && ((CreeperRail) block).isAscending())
             return true;
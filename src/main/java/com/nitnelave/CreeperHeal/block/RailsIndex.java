@@ -1,35 +1,45 @@
 package com.nitnelave.CreeperHeal.block;
 
-import java.util.Date;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Map;
 
-import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
 
-import com.nitnelave.CreeperHeal.CreeperHeal;
 import com.nitnelave.CreeperHeal.config.CfgVal;
 import com.nitnelave.CreeperHeal.config.CreeperConfig;
+import com.nitnelave.CreeperHeal.utils.CreeperClock;
+import com.nitnelave.CreeperHeal.utils.CreeperScheduler;
+import com.nitnelave.CreeperHeal.utils.LongHashSet;
+import com.nitnelave.CreeperHeal.utils.PackedLocation;
 
 /**
  * Contains and manages the list of rails whose update should be prevented.
- * 
+ * The rails are stored by packed position, in buckets of the rails added
+ * during the same period of time, so that a whole bucket expires at once.
+ *
  * @author nitnelave
- * 
+ *
  */
 public class RailsIndex
 {
 
     /*
-     * Block whose update should be prevented.
+     * Number of buckets over the time an update is prevented.
      */
-    private static Map<CreeperRail, Date> railsIndex;
+    private final static int BUCKETS = 4;
+
+    /*
+     * Buckets of rails whose update should be prevented, the oldest first.
+     */
+    private final static LinkedList<Bucket> buckets = new LinkedList<Bucket>();
 
     static
     {
-        railsIndex = new HashMap<CreeperRail, Date>();
-
-        Bukkit.getScheduler().scheduleSyncRepeatingTask(CreeperHeal.getInstance(), new Runnable()
+        CreeperScheduler.runTaskTimer(new Runnable()
         {
             @Override
             public void run()
@@ -40,50 +50,123 @@ public class RailsIndex
     }
 
     /**
-     * Get whether the location is next to a block whose update is prevented.
-     * 
+     * Get whether the block is a rail whose update is prevented.
+     *
      * @param block
      *            The block to check.
-     * @return Whether the location is next to a block whose update is
-     *         prevented.
+     * @return Whether the block's update is prevented.
      */
-    public static boolean isUpdatePrevented(CreeperBlock block)
+    public static boolean isUpdatePrevented(Block block)
     {
-        if (!(block instanceof CreeperRail))
+        if (buckets.isEmpty() || !isRail(block.getTypeId()))
             return false;
-        return railsIndex.containsKey(block);
+        World w = block.getWorld();
+        long position = PackedLocation.pack(block);
+        long expired = getExpiry(CreeperClock.now());
+        for (Bucket bucket : buckets)
+            if (bucket.time >= expired && bucket.contains(w, position))
+                return true;
+        return false;
     }
 
     /**
      * Add the location to the list of blocks that shouldn't be updated. The
      * block's updates are prevented until after 200 times the block per block
      * replacement interval.
-     * 
+     *
      * @param block
      *            The block.
      */
     public static void putUpdatePrevention(CreeperRail block)
     {
-        if (CreeperConfig.getBool(CfgVal.RAIL_REPLACEMENT))
-            railsIndex.put(block, new Date());
+        if (!CreeperConfig.getBool(CfgVal.RAIL_REPLACEMENT))
+            return;
+        long now = CreeperClock.now();
+        removeExpired(getExpiry(now));
+        Bucket bucket = buckets.isEmpty() ? null : buckets.getLast();
+        if (bucket == null || bucket.time < now - getDuration() / BUCKETS)
+        {
+            bucket = new Bucket(now);
+            buckets.add(bucket);
+        }
+        bucket.add(block.getWorld(), PackedLocation.pack(block.getX(), block.getY(), block.getZ()));
     }
 
-    private static void cleanUp()
+    static void cleanUp()
+    {
+        removeExpired(getExpiry(CreeperClock.now()));
+    }
+
+    /*
+     * Get the number of buckets of rails.
+     */
+    static int size()
+    {
+        return buckets.size();
+    }
+
+    /*
+     * Drop the buckets started before the time.
+     */
+    private static void removeExpired(long time)
+    {
+        Iterator<Bucket> iter = buckets.iterator();
+        while (iter.hasNext() && iter.next().time < time)
+            iter.remove();
+    }
+
+    /*
+     * Get the time before which a bucket is expired: its last rail was added
+     * at most a bucket's length after it started.
+     */
+    private static long getExpiry(long now)
     {
-        if (CreeperConfig.getBool(CfgVal.RAIL_REPLACEMENT))
+        long duration = getDuration();
+        return now - duration - duration / BUCKETS;
+    }
+
+    /*
+     * The time in milliseconds during which a rail's update is prevented.
+     */
+    private static long getDuration()
+    {
+        return 200L * CreeperConfig.getInt(CfgVal.BLOCK_PER_BLOCK_INTERVAL);
+    }
+
+    private static boolean isRail(int typeId)
+    {
+        return typeId == Material.RAILS.getId() || typeId == Material.POWERED_RAIL.getId()
+               || typeId == Material.DETECTOR_RAIL.getId();
+    }
+
+    /*
+     * The rails added since the bucket's time, by world.
+     */
+    private static class Bucket
+    {
+        private final long time;
+        private final Map<World, LongHashSet> positions = new IdentityHashMap<World, LongHashSet>();
+
+        private Bucket(long time)
+        {
+            this.time = time;
+        }
+
+        private void add(World world, long position)
         {
-            Date delay = new Date(new Date().getTime() - 200
-                                  * CreeperConfig.getInt(CfgVal.BLOCK_PER_BLOCK_INTERVAL));
-            Iterator<Date> iter;
-            iter = railsIndex.values().iterator();
-            while (iter.hasNext())
+            LongHashSet set = positions.get(world);
+            if (set == null)
             {
-                Date date = iter.next();
-                if (date.before(delay))
-                    iter.remove();
-                else
-                    break;
+                set = new LongHashSet();
+                positions.put(world, set);
             }
+            set.add(position);
+        }
+
+        private boolean contains(World world, long position)
+        {
+            LongHashSet set = positions.get(world);
+            return set != null && set.contains(position);
         }
     }
 }
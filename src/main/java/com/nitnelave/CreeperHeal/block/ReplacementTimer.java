@@ -1,6 +1,6 @@
 package com.nitnelave.CreeperHeal.block;
 
-import java.util.Date;
+import com.nitnelave.CreeperHeal.utils.CreeperClock;
 
 /**
  * Utility for all entities whose replacement is timed.
@@ -10,7 +10,7 @@ import java.util.Date;
  */
 public class ReplacementTimer
 {
-    private Date time;
+    private long time;
     private final boolean timed;
     private boolean postponed = false;
 
@@ -18,12 +18,13 @@ public class ReplacementTimer
      * Constructor.
      * 
      * @param time
-     *            The time at which the entity should be replaced.
+     *            The time at which the entity should be replaced, on the
+     *            CreeperClock.
      * @param timed
      *            Whether the replacement is in a world where replacements are
      *            timed, i.e. happen at a certain hour of the Minecraft day.
      */
-    public ReplacementTimer(Date time, boolean timed)
+    public ReplacementTimer(long time, boolean timed)
     {
         this.time = time;
         this.timed = timed;
@@ -40,7 +41,7 @@ public class ReplacementTimer
     {
         if (postponed)
             return false;
-        time = new Date(time.getTime() + 1000 * delay);
+        time += 1000L * delay;
         postponed = true;
         return true;
     }
@@ -51,7 +52,7 @@ public class ReplacementTimer
      * @return The recorded time. Either the time the block was burnt or later
      *         if the replacement has been delayed.
      */
-    public Date getTime()
+    public long getTime()
     {
         return time;
     }
@@ -63,7 +64,7 @@ public class ReplacementTimer
      */
     public boolean checkReplace()
     {
-        return timed || time.before(new Date());
+        return timed || time <= CreeperClock.now();
     }
 
     /**
@@ -87,7 +88,7 @@ public class ReplacementTimer
     {
         final int prime = 31;
         int result = 1;
-        result = prime * result + ((time == null) ? 0 : time.hashCode());
+        result = prime * result + (int) (time ^ (time >>> 32));
         result = prime * result + (timed ? 1231 : 1237);
         return result;
     }
@@ -105,14 +106,7 @@ public class ReplacementTimer
         if (!(obj instanceof ReplacementTimer))
             return false;
         ReplacementTimer other = (ReplacementTimer) obj;
-        if (time == null)
-        {
-            if (other.time != null)
-                return false;
-        }
-        else if (!time.equals(other.time))
-            return false;
-        return timed == other.timed;
+        return time == other.time && timed == other.timed;
     }
 
 }
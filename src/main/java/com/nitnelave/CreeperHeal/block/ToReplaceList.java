@@ -2,12 +2,12 @@ package com.nitnelave.CreeperHeal.block;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 
-import com.nitnelave.CreeperHeal.CreeperHeal;
+import com.nitnelave.CreeperHeal.utils.CreeperScheduler;
 
 /**
  * Class to handle the blocks to be replaced immediately.
@@ -32,6 +32,23 @@ public abstract class ToReplaceList
     protected static void addToReplace(CreeperBlock block)
     {
         toReplace.put(block.getLocation(), block);
+        HealJournal.logRecord(block);
+    }
+
+    /*
+     * Add all the blocks waiting to be replaced to the list.
+     */
+    static void collectPending(List<Replaceable> list)
+    {
+        list.addAll(toReplace.values());
+    }
+
+    /*
+     * Get the number of blocks waiting.
+     */
+    static int size()
+    {
+        return toReplace.size();
     }
 
     /**
@@ -40,7 +57,7 @@ public abstract class ToReplaceList
      */
     protected static void replaceProtected()
     {
-        Bukkit.getScheduler().scheduleSyncDelayedTask(CreeperHeal.getInstance(), new Runnable()
+        CreeperScheduler.runTask(new Runnable()
         {
             @Override
             public void run()
@@ -1,5 +1,7 @@
 package com.nitnelave.CreeperHeal.command;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
 
 import org.bukkit.Bukkit;
@@ -11,15 +13,18 @@ import org.bukkit.command.CommandMap;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import com.nitnelave.CreeperHeal.CreeperHeal;
 import com.nitnelave.CreeperHeal.PluginHandler;
 import com.nitnelave.CreeperHeal.block.BurntBlockManager;
 import com.nitnelave.CreeperHeal.block.ExplodedBlockManager;
+import com.nitnelave.CreeperHeal.block.HealTrace;
 import com.nitnelave.CreeperHeal.config.CfgVal;
 import com.nitnelave.CreeperHeal.config.CreeperConfig;
 import com.nitnelave.CreeperHeal.config.WCfgVal;
 import com.nitnelave.CreeperHeal.config.WorldConfig;
 import com.nitnelave.CreeperHeal.utils.CreeperMessenger;
 import com.nitnelave.CreeperHeal.utils.CreeperPermissionManager;
+import com.nitnelave.CreeperHeal.utils.CreeperStats;
 
 /**
  * The command manager for CreeperHeal.
@@ -125,6 +130,18 @@ public class CreeperCommandManager implements CommandExecutor
             else if (cmd.equalsIgnoreCase("reload"))
                 CreeperConfig.load();
 
+            else if (cmd.equalsIgnoreCase("stats"))
+            {
+                stats(sender);
+                return true;
+            }
+
+            else if (cmd.equalsIgnoreCase("trace"))
+            {
+                trace(sender, args);
+                return true;
+            }
+
             else if (cmd.equalsIgnoreCase("help"))
                 sendHelp(sender);
             else if (cmd.equalsIgnoreCase("on"))
@@ -190,6 +207,10 @@ public class CreeperCommandManager implements CommandExecutor
                                    + " Same for a burnt block");
                 sender.sendMessage(GREEN + "/ch (blockPerBlockInterval|bpbi) [ticks] :" + PURPLE
                                    + " Sets the block replacement rate");
+                sender.sendMessage(GREEN + "/ch stats :" + PURPLE
+                                   + " Shows the work done and the blocks waiting.");
+                sender.sendMessage(GREEN + "/ch trace (on|off) :" + PURPLE
+                                   + " Records the explosions and fires to trace.dat.");
             }
 
             if (heal)
@@ -206,6 +227,50 @@ public class CreeperCommandManager implements CommandExecutor
         }
     }
 
+    /*
+     * Display the stats of the plugin.
+     */
+    private void stats(CommandSender sender)
+    {
+        if (sender instanceof Player && !checkPermissions((Player) sender, "admin"))
+        {
+            sender.sendMessage(getMessage("no-permission-command", null, sender.getName(), null, null, null, null));
+            return;
+        }
+        for (String line : CreeperStats.getReport())
+        {
+            int i = line.indexOf(':');
+            sender.sendMessage(GREEN + line.substring(0, i + 1) + PURPLE + line.substring(i + 1));
+        }
+    }
+
+    /*
+     * Start or stop recording a trace.
+     */
+    private void trace(CommandSender sender, String[] args)
+    {
+        if (sender instanceof Player && !checkPermissions((Player) sender, "admin"))
+        {
+            sender.sendMessage(getMessage("no-permission-command", null, sender.getName(), null, null, null, null));
+            return;
+        }
+        boolean on = args.length == 1 ? !HealTrace.isRecording() : args[1].equalsIgnoreCase("on");
+        if (!on)
+        {
+            HealTrace.stop();
+            sender.sendMessage(GREEN + "Trace recording stopped");
+            return;
+        }
+        try
+        {
+            HealTrace.start(new File(CreeperHeal.getCHFolder(), "trace.dat"));
+            sender.sendMessage(GREEN + "Recording the trace to trace.dat");
+        } catch (IOException e)
+        {
+            sender.sendMessage(ChatColor.RED + "Could not write the trace : " + e.getMessage());
+        }
+    }
+
     /**
      * Handle the commands concerning boolean settings.
      * 
@@ -6,9 +6,21 @@ import org.bukkit.configuration.file.YamlConfiguration;
 
 import com.nitnelave.CreeperHeal.block.BlockId;
 
+/**
+ * A list of block types, with optional data values. The list is compiled into
+ * a mask of the data values for each type id, so that testing whether a block
+ * is in the list does not allocate anything: an id without data matches all
+ * the data values of the type, an id with data only matches this value.
+ */
 class BlockIdListValue extends ConfigValue<HashSet<BlockId>>
 {
 
+    /*
+     * For each type id, the bit (1 << data) is set if the data value is in the
+     * list.
+     */
+    private volatile char[] masks = new char[0];
+
     protected BlockIdListValue(CfgValEnumMember v, YamlConfiguration file)
     {
         super((HashSet<BlockId>) v.getDefaultValue(), file, v.getKey());
@@ -35,6 +47,34 @@ class BlockIdListValue extends ConfigValue<HashSet<BlockId>>
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.nitnelave.CreeperHeal.config.ConfigValue#setValue(java.lang.Object)
+     */
+    @Override
+    protected void setValue(HashSet<BlockId> value)
+    {
+        super.setValue(value);
+        int max = -1;
+        for (BlockId id : value)
+            max = Math.max(max, id.getId());
+        char[] m = new char[max + 1];
+        for (BlockId id : value)
+            if (id.getId() >= 0)
+                m[id.getId()] |= id.hasData() ? 1 << (id.getData() & 0xF) : 0xFFFF;
+        masks = m;
+    }
+
+    /*
+     * Get whether a block with the type and data is in the list.
+     */
+    protected boolean contains(int typeId, byte data)
+    {
+        char[] m = masks;
+        return typeId >= 0 && typeId < m.length && (m[typeId] >> (data & 0xF) & 1) != 0;
+    }
+
     @Override
     protected void write()
     {
@@ -7,6 +7,7 @@ public enum CfgVal implements CfgValEnumMember
 {
 
     BLOCK_PER_BLOCK_INTERVAL("block-per-block.interval", 20, false),
+    TICK_BUDGET("block-per-block.tick-budget", 5000, false),
     WAIT_BEFORE_HEAL("wait-before-heal.explosions", 60, false),
     BLOCK_PER_BLOCK("block-per-block.enabled", true, false),
     WAIT_BEFORE_HEAL_BURNT("wait-before-heal.fire", 45, false),
@@ -21,6 +22,7 @@ public enum CfgVal implements CfgValEnumMember
     DISTANCE_NEAR("distance-near", 20, true),
     ALIAS("command-alias", "ch", true),
     LOG_WARNINGS("log-warnings", true, true),
+    LOG_MAX_SIZE("log-max-size", 1024, true),
     PREVENT_CHAIN_REACTION("prevent-chain-reaction", false, true),
     EXPLODE_OBSIDIAN("obsidian.explode", false, true),
     OBSIDIAN_RADIUS("obsidian.radius", 5, true),
@@ -36,7 +38,11 @@ public enum CfgVal implements CfgValEnumMember
     STONE_TO_COBBLE("change-stone-to-cobble", false, true),
     OBSIDIAN_TABLE("obsidian.enchant-tables-and-chests", false, true),
     SOUND_NAME("sound.type", "ITEM_PICKUP", false),
-    SOUND_VOLUME("sound.volume", 1, false);
+    SOUND_VOLUME("sound.volume", 1, false),
+    JOURNAL("journal.enabled", true, true),
+    JOURNAL_FLUSH_INTERVAL("journal.flush-interval", 50, true),
+    STATS_DUMP_INTERVAL("stats-dump-interval", 0, true),
+    STATS_TIME_LISTENERS("stats-time-listeners", false, true);
 
     private final String key;
     private final Object defaultValue;
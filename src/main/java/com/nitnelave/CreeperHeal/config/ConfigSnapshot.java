@@ -0,0 +1,47 @@
+package com.nitnelave.CreeperHeal.config;
+
+/**
+ * An immutable copy of the boolean and integer values of a configuration,
+ * indexed by the ordinal of their key. Reading a value is an array access
+ * instead of a map lookup. The configuration builds a new snapshot whenever
+ * its values change, and replaces the previous one at once, so that a reader
+ * never sees a half-loaded configuration.
+ *
+ * @author nitnelave
+ *
+ */
+final class ConfigSnapshot
+{
+
+    private final boolean[] bools;
+    private final int[] ints;
+
+    /*
+     * The arrays are owned by the snapshot, and must not be modified
+     * afterwards.
+     */
+    ConfigSnapshot(boolean[] bools, int[] ints)
+    {
+        this.bools = bools;
+        this.ints = ints;
+    }
+
+    /*
+     * Get the boolean value of the key with the ordinal, false if the key is
+     * not a boolean.
+     */
+    boolean getBool(int ordinal)
+    {
+        return bools[ordinal];
+    }
+
+    /*
+     * Get the int value of the key with the ordinal, 0 if the key is not an
+     * int.
+     */
+    int getInt(int ordinal)
+    {
+        return ints[ordinal];
+    }
+
+}
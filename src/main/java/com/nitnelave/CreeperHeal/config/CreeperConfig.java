@@ -5,6 +5,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.logging.Logger;
 
@@ -16,6 +17,7 @@ import org.bukkit.configuration.file.YamlConfiguration;
 
 import com.nitnelave.CreeperHeal.CreeperHeal;
 import com.nitnelave.CreeperHeal.utils.CreeperLog;
+import com.nitnelave.CreeperHeal.utils.CreeperScheduler;
 import com.nitnelave.CreeperHeal.utils.FileUtils;
 
 /**
@@ -33,11 +35,21 @@ public abstract class CreeperConfig
                                              + "/advanced.yml");
     private static final Logger LOG = Logger.getLogger("Minecraft");
     private static final Map<String, WorldConfig> world_config = new HashMap<String, WorldConfig>();
+    /*
+     * The configurations of the loaded worlds, by World object, to avoid
+     * hashing the world's name on every event.
+     */
+    private static final Map<World, WorldConfig> loaded_worlds = new IdentityHashMap<World, WorldConfig>();
     private static final Map<String, ConfigValue<Boolean>> booleans = new HashMap<String, ConfigValue<Boolean>>();
     private static final Map<String, ConfigValue<Integer>> integers = new HashMap<String, ConfigValue<Integer>>();
     private static final YamlConfiguration config = new YamlConfiguration(),
                     advanced = new YamlConfiguration();
 
+    /*
+     * The values of the maps, as read by getBool and getInt.
+     */
+    private static volatile ConfigSnapshot snapshot;
+
     private static ConfigValue<String> alias, soundName;
     private static Sound sound = null;
     private static int configVersion = CONFIG_VERSION;
@@ -69,7 +81,32 @@ public abstract class CreeperConfig
             }
             else
                 CreeperLog.warning("Unknown config value : " + v.toString());
+        compile();
+    }
 
+    /*
+     * Copy the values of the maps to a new snapshot, and publish it.
+     */
+    private static void compile()
+    {
+        CfgVal[] values = CfgVal.values();
+        boolean[] bools = new boolean[values.length];
+        int[] ints = new int[values.length];
+        for (CfgVal v : values)
+        {
+            ConfigValue<Boolean> b = booleans.get(v.getKey());
+            if (b != null)
+                bools[v.ordinal()] = b.getValue();
+            ConfigValue<Integer> i = integers.get(v.getKey());
+            if (i != null)
+                ints[v.ordinal()] = i.getValue();
+        }
+        snapshot = new ConfigSnapshot(bools, ints);
+        /*
+         * The transforms of the worlds depend on the global values.
+         */
+        for (WorldConfig w : world_config.values())
+            w.compile();
     }
 
     private static void loadSound()
@@ -94,14 +131,11 @@ public abstract class CreeperConfig
      * 
      * @param val
      *            The config key.
-     * @return The boolean value.
+     * @return The boolean value, false if the value is not a boolean.
      */
     public static boolean getBool(CfgVal val)
     {
-        ConfigValue<Boolean> v = booleans.get(val.getKey());
-        if (v == null)
-            throw new NullPointerException("Missing config value : " + val.getKey());
-        return v.getValue();
+        return snapshot.getBool(val.ordinal());
     }
 
     /**
@@ -109,14 +143,11 @@ public abstract class CreeperConfig
      * 
      * @param val
      *            The config key.
-     * @return The int value.
+     * @return The int value, 0 if the value is not an int.
      */
     public static int getInt(CfgVal val)
     {
-        ConfigValue<Integer> v = integers.get(val.getKey());
-        if (v == null)
-            throw new NullPointerException("Missing config value : " + val.getKey());
-        return v.getValue();
+        return snapshot.getInt(val.ordinal());
     }
 
     /**
@@ -133,6 +164,7 @@ public abstract class CreeperConfig
         if (v == null)
             throw new NullPointerException("Unknown config key path : " + val.getKey());
         v.setValue(value);
+        compile();
     }
 
     /**
@@ -149,6 +181,7 @@ public abstract class CreeperConfig
         if (v == null)
             throw new NullPointerException("Unknown config key path : " + val.getKey());
         v.setValue(value);
+        compile();
     }
 
     /*
@@ -206,9 +239,10 @@ public abstract class CreeperConfig
             {
                 for (ConfigValue<Boolean> v : booleans.values())
                     v.load();
-                CreeperLog.setDebug(getBool(CfgVal.DEBUG));
                 for (ConfigValue<Integer> v : integers.values())
                     v.load();
+                compile();
+                CreeperLog.setDebug(getBool(CfgVal.DEBUG));
                 alias.load();
                 soundName.load();
                 loadSound();
@@ -241,12 +275,14 @@ public abstract class CreeperConfig
     private static void loadWorlds()
     {
         world_config.clear();
+        loaded_worlds.clear();
         try
         {
             for (World w : Bukkit.getServer().getWorlds())
             {
                 WorldConfig world = loadWorld(w.getName());
                 world_config.put(w.getName(), world);
+                loaded_worlds.put(w, world);
             }
         } catch (Exception e)
         {
@@ -276,6 +312,57 @@ public abstract class CreeperConfig
         return w;
     }
 
+    /**
+     * Read the configuration of a world that was just loaded, so that the
+     * events in the world do not have to wait for the files. The files are
+     * read in another thread, and the configuration is put in use in the next
+     * tick, unless it was already needed and loaded in the meantime.
+     * 
+     * @param world
+     *            The world loaded.
+     */
+    public static void preloadWorld(final World world)
+    {
+        final String name = world.getName();
+        if (world_config.containsKey(name) || configVersion < 8)
+            return;
+        CreeperScheduler.runTaskAsynchronously(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final WorldConfig w = new WorldConfig(name);
+                if (!w.read())
+                    return;
+                CreeperScheduler.runTask(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        if (world_config.containsKey(name))
+                            return;
+                        w.scheduleRepairCheck();
+                        if (w.hasGriefProtection())
+                            CreeperHeal.registerGriefEvents();
+                        world_config.put(name, w);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Forget the World object of a world that was unloaded. Its configuration
+     * is kept, in case it is loaded again.
+     * 
+     * @param world
+     *            The world unloaded.
+     */
+    public static void unloadWorld(World world)
+    {
+        loaded_worlds.remove(world);
+    }
+
     /**
      * Save the main and advanced configuration to the file.
      */
@@ -318,7 +405,14 @@ public abstract class CreeperConfig
      */
     public static WorldConfig getWorld(World world)
     {
-        return getWorld(world.getName());
+        WorldConfig w = loaded_worlds.get(world);
+        if (w == null)
+        {
+            w = getWorld(world.getName());
+            if (w != null)
+                loaded_worlds.put(world, w);
+        }
+        return w;
     }
 
     /**
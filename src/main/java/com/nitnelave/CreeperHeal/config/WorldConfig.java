@@ -6,6 +6,7 @@ import com.nitnelave.CreeperHeal.block.BlockId;
 import com.nitnelave.CreeperHeal.block.BurntBlockManager;
 import com.nitnelave.CreeperHeal.block.ExplodedBlockManager;
 import com.nitnelave.CreeperHeal.utils.CreeperLog;
+import com.nitnelave.CreeperHeal.utils.CreeperScheduler;
 import com.nitnelave.CreeperHeal.utils.FileUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -34,6 +35,21 @@ public class WorldConfig
 {
 
     private final HashMap<String, ConfigValue<Boolean>> booleans = new HashMap<String, ConfigValue<Boolean>>();
+    /*
+     * The values of the booleans and integers, as read by getBool.
+     */
+    private volatile ConfigSnapshot snapshot;
+    /*
+     * The number of block types that can be transformed.
+     */
+    private final static int TRANSFORM_TYPES = 256;
+    /*
+     * The type and data a block is replaced with, packed as (type << 4 |
+     * data), and indexed by the block's packed type and data. It combines the
+     * replace.yml file and the global transforms (stone to cobble, cracked
+     * bricks) with the world's grass to dirt.
+     */
+    private volatile char[] transforms;
     private final String name;
     private IntegerConfigValue repairTime, replaceLimit;
     private BlockIdListValue replaceBlackList, griefPlaceList, protectList, replaceWhiteList;
@@ -89,6 +105,91 @@ public class WorldConfig
                 default:
                     CreeperLog.warning("Unknown config value : " + v.toString());
                 }
+        compile();
+    }
+
+    /*
+     * Copy the booleans and integers to a new snapshot, and compile the
+     * transforms table, then publish them.
+     */
+    void compile()
+    {
+        WCfgVal[] values = WCfgVal.values();
+        boolean[] bools = new boolean[values.length];
+        int[] ints = new int[values.length];
+        for (WCfgVal v : values)
+        {
+            ConfigValue<Boolean> b = booleans.get(v.getKey());
+            if (b != null)
+                bools[v.ordinal()] = b.getValue();
+        }
+        ints[WCfgVal.REPAIR_TIME.ordinal()] = repairTime.getValue();
+        ints[WCfgVal.REPLACE_LIMIT.ordinal()] = replaceLimit.getValue();
+        snapshot = new ConfigSnapshot(bools, ints);
+        transforms = compileTransforms();
+    }
+
+    /*
+     * Build the transforms table. The keys of replace.yml are either a type
+     * name, or a type name and a data value separated by a semicolon, which
+     * takes precedence. The global transforms apply to the result.
+     */
+    private char[] compileTransforms()
+    {
+        char[] table = new char[TRANSFORM_TYPES << 4];
+        for (int i = 0; i < table.length; i++)
+            table[i] = (char) i;
+        for (String key : replacement.getKeys(false))
+            if (key.indexOf(';') == -1)
+                compileReplacement(table, key);
+        for (String key : replacement.getKeys(false))
+            if (key.indexOf(';') != -1)
+                compileReplacement(table, key);
+
+        boolean cobble = CreeperConfig.getBool(CfgVal.STONE_TO_COBBLE);
+        boolean dirt = getBool(WCfgVal.GRASS_TO_DIRT);
+        boolean crack = CreeperConfig.getBool(CfgVal.CRACK_DESTROYED_BRICKS);
+        for (int i = 0; i < table.length; i++)
+        {
+            int type = table[i] >> 4, data = table[i] & 0xF;
+            if (cobble && type == Material.STONE.getId())
+                type = Material.COBBLESTONE.getId();
+            else if (dirt && type == Material.GRASS.getId())
+                type = Material.DIRT.getId();
+            else if (crack && type == Material.SMOOTH_BRICK.getId() && data == 0)
+                data = 2;
+            table[i] = (char) (type << 4 | data);
+        }
+        return table;
+    }
+
+    /*
+     * Put the replacement defined for the key of replace.yml in the table.
+     */
+    private void compileReplacement(char[] table, String key)
+    {
+        int separator = key.indexOf(';');
+        Material from = Material.getMaterial(separator == -1 ? key : key.substring(0, separator));
+        Material to = Material.getMaterial(replacement.getString(key + ".type", ""));
+        if (from == null || from.getId() >= TRANSFORM_TYPES || to == null || to.getId() >= 1 << 12)
+        {
+            CreeperLog.warning("Invalid block type for " + key + " in world " + name);
+            return;
+        }
+        int data = Math.max(0, replacement.getInt(key + ".data", 0)) & 0xF;
+        char value = (char) (to.getId() << 4 | data);
+        if (separator == -1)
+            for (int d = 0; d < 16; d++)
+                table[from.getId() << 4 | d] = value;
+        else
+            try
+            {
+                int d = Integer.parseInt(key.substring(separator + 1).trim());
+                table[from.getId() << 4 | d & 0xF] = value;
+            } catch (NumberFormatException e)
+            {
+                CreeperLog.warning("Invalid block data for " + key + " in world " + name);
+            }
     }
 
     private YamlConfiguration getFile(WCfgVal v)
@@ -122,13 +223,25 @@ public class WorldConfig
      */
     public boolean isRepairTimed()
     {
-        return repairTime.getValue() > -1;
+        return getRepairTime() > -1;
     }
 
     /**
      * Load the config from the file.
      */
     protected void load()
+    {
+        if (read())
+            scheduleRepairCheck();
+    }
+
+    /*
+     * Read the config from the files, creating them if needed. Can be run off
+     * the main thread, as long as the config is not in use yet.
+     *
+     * @return False if the files could not be read.
+     */
+    boolean read()
     {
         worldFolder.mkdirs();
         if (!configFile.exists())
@@ -148,15 +261,15 @@ public class WorldConfig
         } catch (FileNotFoundException e)
         {
             e.printStackTrace();
-            return;
+            return false;
         } catch (IOException e)
         {
             e.printStackTrace();
-            return;
+            return false;
         } catch (InvalidConfigurationException e)
         {
             e.printStackTrace();
-            return;
+            return false;
         }
 
         for (ConfigValue<Boolean> v : booleans.values())
@@ -167,9 +280,17 @@ public class WorldConfig
         replaceWhiteList.load();
         protectList.load();
         griefPlaceList.load();
+        compile();
+        return true;
+    }
 
+    /*
+     * Start checking for the repair time, if the repairs are timed.
+     */
+    void scheduleRepairCheck()
+    {
         if (isRepairTimed())
-            Bukkit.getScheduler().scheduleSyncRepeatingTask(CreeperHeal.getInstance(), new Runnable()
+            CreeperScheduler.runTaskTimer(new Runnable()
             {
                 @Override
                 public void run()
@@ -223,13 +344,12 @@ public class WorldConfig
      *
      * @param key
      *            The key
-     * @return The value of the boolean.
-     * @throws NullPointerException
-     *             If the key does not represent a boolean.
+     * @return The value of the boolean, false if the key does not represent
+     *         a boolean.
      */
-    public boolean getBool(WCfgVal key) throws NullPointerException
+    public boolean getBool(WCfgVal key)
     {
-        return booleans.get(key.getKey()).getValue();
+        return snapshot.getBool(key.ordinal());
     }
 
     /**
@@ -279,7 +399,7 @@ public class WorldConfig
      */
     public boolean isAbove(Location loc)
     {
-        return !getBool(WCfgVal.REPLACE_ABOVE) || loc.getBlockY() >= replaceLimit.getValue();
+        return !getBool(WCfgVal.REPLACE_ABOVE) || loc.getBlockY() >= snapshot.getInt(WCfgVal.REPLACE_LIMIT.ordinal());
     }
 
     /**
@@ -291,10 +411,29 @@ public class WorldConfig
      */
     public boolean isProtected(Block block)
     {
-        return protectList.getValue().contains(new BlockId(block))
-               || (block.getState() instanceof InventoryHolder
+        return protectList.contains(block.getTypeId(), block.getData())
+               || (CreeperConfig.getBool(CfgVal.REPLACE_PROTECTED_CHESTS)
+                   && block.getState() instanceof InventoryHolder && PluginHandler.isProtected(block));
+    }
+
+    /**
+     * Get whether the given block type is protected in this world, for a
+     * block whose state and id were already read.
+     *
+     * @param state
+     *            The state of the block to test.
+     * @param typeId
+     *            The type id of the block to test.
+     * @param data
+     *            The data of the block to test.
+     * @return Whether the block's type is protected.
+     */
+    public boolean isProtected(BlockState state, int typeId, byte data)
+    {
+        return protectList.contains(typeId, data)
+               || (state instanceof InventoryHolder
                    && CreeperConfig.getBool(CfgVal.REPLACE_PROTECTED_CHESTS) && PluginHandler
-                               .isProtected(block));
+                               .isProtected(state.getBlock()));
     }
 
     /**
@@ -330,7 +469,7 @@ public class WorldConfig
      */
     public boolean isGriefBlackListed(Block block)
     {
-        return griefPlaceList.getValue().contains(new BlockId(block));
+        return griefPlaceList.contains(block.getTypeId(), block.getData());
     }
 
     /**
@@ -359,6 +498,7 @@ public class WorldConfig
         if (v == null)
             throw new NullPointerException("Unknown config key path : " + key.getKey());
         v.setValue(value);
+        compile();
     }
 
     /**
@@ -384,6 +524,7 @@ public class WorldConfig
         default:
             throw new NullPointerException("Unknown config key path : " + key.getKey());
         }
+        compile();
     }
 
     protected void setList(WCfgVal val, HashSet<BlockId> value)
@@ -414,47 +555,45 @@ public class WorldConfig
      */
     public int getRepairTime()
     {
-        return repairTime.getValue();
+        return snapshot.getInt(WCfgVal.REPAIR_TIME.ordinal());
     }
 
     /**
      * Get whether a block is blacklisted for replacement (i.e. should not be
      * replaced).
      *
-     * @param id
-     *            The blockId of the block.
+     * @param typeId
+     *            The type id of the block.
+     * @param data
+     *            The data of the block.
      * @return True if the block should not be blacklisted.
      */
-    public boolean isBlackListed(BlockId id)
+    public boolean isBlackListed(int typeId, byte data)
     {
         if (getBool(WCfgVal.USE_REPLACE_WHITE_LIST))
-            return !replaceWhiteList.getValue().contains(id);
+            return !replaceWhiteList.contains(typeId, data);
         else
-            return replaceBlackList.getValue().contains(id);
+            return replaceBlackList.contains(typeId, data);
     }
 
+    /**
+     * Apply to the state the transforms of this world: the replacements
+     * defined in the world's replace.yml file, then stone to cobblestone,
+     * grass to dirt and cracked bricks if enabled.
+     *
+     * @param state
+     *            The state to transform.
+     */
     public void getReplacement(BlockState state)
     {
-        String key = state.getType().toString() + ';' + state.getRawData();
-        String s = replacement.getString(key + ".type");
-        if (s == null)
-        {
-            key = state.getType().toString();
-            s = replacement.getString(key + ".type");
-        }
-        if (s == null)
+        int type = state.getTypeId();
+        if (type >= TRANSFORM_TYPES)
             return;
-        Material material = Material.getMaterial(s);
-        if (material == null)
-        {
-            CreeperLog.warning("Invalid block type for " + key + " in world " + state.getWorld().getName());
+        int index = type << 4 | state.getRawData() & 0xF;
+        char transform = transforms[index];
+        if (transform == index)
             return;
-        }
-        int data = replacement.getInt(key + ".data", -1);
-        state.setType(material);
-        if (data != -1)
-            state.setRawData((byte) data);
-        else
-            state.setRawData((byte) 0);
+        state.setTypeId(transform >> 4);
+        state.setRawData((byte) (transform & 0xF));
     }
 }
@@ -14,6 +14,7 @@ import com.nitnelave.CreeperHeal.block.ExplodedBlockManager;
 import com.nitnelave.CreeperHeal.block.FallIndex;
 import com.nitnelave.CreeperHeal.config.CfgVal;
 import com.nitnelave.CreeperHeal.config.CreeperConfig;
+import com.nitnelave.CreeperHeal.utils.DamagedChunks;
 
 /**
  * Listener for all events related to blocks falling.
@@ -34,6 +35,8 @@ public class BlockFallListener implements Listener
     public void onBlockPhysics(BlockPhysicsEvent event)
     {
         Block b = event.getBlock();
+        if (!DamagedChunks.isDamaged(b))
+            return;
         if (CreeperConfig.getBool(CfgVal.PREVENT_BLOCK_FALL) && b.getType().hasGravity())
         {
             Location bLoc = b.getLocation();
@@ -54,7 +57,8 @@ public class BlockFallListener implements Listener
     @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
     public void onEntityChangeBlock(EntityChangeBlockEvent event)
     {
-        if (event.getEntityType() != EntityType.ENDERMAN && event.getBlock().getType().hasGravity())
+        if (event.getEntityType() != EntityType.ENDERMAN && DamagedChunks.isDamaged(event.getBlock())
+            && event.getBlock().getType().hasGravity())
         {
             Location l = event.getBlock().getLocation();
             if (FallIndex.isNextToFallPrevention(l) || ExplodedBlockManager.isNextToExplosion(l)
@@ -6,6 +6,7 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBurnEvent;
 
 import com.nitnelave.CreeperHeal.block.BurntBlockManager;
+import com.nitnelave.CreeperHeal.block.HealTrace;
 import com.nitnelave.CreeperHeal.config.CreeperConfig;
 import com.nitnelave.CreeperHeal.config.WCfgVal;
 import com.nitnelave.CreeperHeal.config.WorldConfig;
@@ -40,6 +41,7 @@ public class CreeperBlockListener implements Listener
                 event.setCancelled(true);
                 return;
             }
+            HealTrace.recordBurn(event.getBlock());
             BurntBlockManager.recordBurntBlock(event.getBlock());
         }
 
@@ -1,8 +1,5 @@
 package com.nitnelave.CreeperHeal.listeners;
 
-import java.util.Date;
-
-import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Entity;
@@ -16,16 +13,19 @@ import org.bukkit.event.entity.EntityChangeBlockEvent;
 import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.event.hanging.HangingBreakEvent;
 
-import com.nitnelave.CreeperHeal.CreeperHeal;
 import com.nitnelave.CreeperHeal.block.BurntBlockManager;
 import com.nitnelave.CreeperHeal.block.CreeperBurntBlock;
 import com.nitnelave.CreeperHeal.block.CreeperHanging;
 import com.nitnelave.CreeperHeal.block.ExplodedBlockManager;
+import com.nitnelave.CreeperHeal.block.HealTrace;
 import com.nitnelave.CreeperHeal.config.CfgVal;
 import com.nitnelave.CreeperHeal.config.CreeperConfig;
 import com.nitnelave.CreeperHeal.config.WCfgVal;
 import com.nitnelave.CreeperHeal.config.WorldConfig;
+import com.nitnelave.CreeperHeal.events.CHExplosionRecordEvent;
+import com.nitnelave.CreeperHeal.utils.CreeperClock;
 import com.nitnelave.CreeperHeal.utils.CreeperLog;
+import com.nitnelave.CreeperHeal.utils.CreeperScheduler;
 import com.nitnelave.CreeperHeal.utils.CreeperUtils;
 import com.nitnelave.CreeperHeal.utils.FactionHandler;
 import com.nitnelave.CreeperHeal.utils.Suffocating;
@@ -57,7 +57,11 @@ public class CreeperListener implements Listener
             if (entity == null && !world.isAbove(event.getLocation()))
                 return;
             if (world.shouldReplace(entity))
-                ExplodedBlockManager.processExplosion(event, CreeperUtils.getReason(entity));
+            {
+                CHExplosionRecordEvent.ExplosionReason reason = CreeperUtils.getReason(entity);
+                HealTrace.recordExplosion(event.blockList(), event.getLocation(), reason);
+                ExplodedBlockManager.processExplosion(event, reason);
+            }
         }
     }
 
@@ -76,12 +80,16 @@ public class CreeperListener implements Listener
         switch (event.getCause())
         {
         case EXPLOSION:
+            HealTrace.recordHanging(h, true);
             ExplodedBlockManager.recordHanging(h);
             break;
         case PHYSICS:
         case OBSTRUCTION:
             if (BurntBlockManager.isNextToFire(h.getLocation()) && world.getBool(WCfgVal.FIRE))
-                BurntBlockManager.recordBurntBlock(new CreeperBurntBlock(new Date(), CreeperHanging.newHanging(h)));
+            {
+                HealTrace.recordHanging(h, false);
+                BurntBlockManager.recordBurntBlock(new CreeperBurntBlock(CreeperClock.now(), CreeperHanging.newHanging(h)));
+            }
             break;
         default:
         }
@@ -101,7 +109,7 @@ public class CreeperListener implements Listener
         if (event.getEntityType() == EntityType.SILVERFISH
             && event.getBlock().getType() == Material.MONSTER_EGGS
             && CreeperConfig.getBool(CfgVal.REPLACE_SILVERFISH_BLOCKS))
-            Bukkit.getScheduler().runTask(CreeperHeal.getInstance(), new ReplaceMonsterEgg(event.getBlock()));
+            CreeperScheduler.runTask(new ReplaceMonsterEgg(event.getBlock()));
         else if (event.getEntity().getType() == EntityType.ENDERMAN)
         {
             WorldConfig world = CreeperConfig.getWorld(event.getBlock().getWorld());
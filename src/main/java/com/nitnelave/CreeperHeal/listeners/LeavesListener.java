@@ -10,6 +10,7 @@ import org.bukkit.event.block.LeavesDecayEvent;
 
 import com.nitnelave.CreeperHeal.block.BurntBlockManager;
 import com.nitnelave.CreeperHeal.block.ExplodedBlockManager;
+import com.nitnelave.CreeperHeal.utils.DamagedChunks;
 
 /**
  * Listener for Leaves and Vines related events.
@@ -30,6 +31,8 @@ public class LeavesListener implements Listener
     public void onBlockPhysics(BlockPhysicsEvent event)
     {
         Block b = event.getBlock();
+        if (!DamagedChunks.isDamaged(b))
+            return;
         if (b.getType() == Material.VINE
             && (ExplodedBlockManager.isNextToExplosion(b.getLocation()) || BurntBlockManager.isNextToFire(b.getLocation())))
             event.setCancelled(true);
@@ -46,6 +49,8 @@ public class LeavesListener implements Listener
     public void onLeavesDecay(LeavesDecayEvent event)
     {
         Block b = event.getBlock();
+        if (!DamagedChunks.isDamaged(b))
+            return;
         if (ExplodedBlockManager.isNextToExplosion(b.getLocation())
             || BurntBlockManager.isNextToFire(b.getLocation()))
             event.setCancelled(true);
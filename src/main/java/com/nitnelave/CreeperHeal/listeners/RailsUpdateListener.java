@@ -6,7 +6,6 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockPhysicsEvent;
 
-import com.nitnelave.CreeperHeal.block.CreeperBlock;
 import com.nitnelave.CreeperHeal.block.RailsIndex;
 
 /**
@@ -27,7 +26,7 @@ public class RailsUpdateListener implements Listener
     public void onBlockPhysics(BlockPhysicsEvent event)
     {
         Block b = event.getBlock();
-        if (RailsIndex.isUpdatePrevented(CreeperBlock.newBlock(b.getState())))
+        if (RailsIndex.isUpdatePrevented(b))
             event.setCancelled(true);
     }
 }
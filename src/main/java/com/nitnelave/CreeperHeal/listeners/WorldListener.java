@@ -0,0 +1,64 @@
+package com.nitnelave.CreeperHeal.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldSaveEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import com.nitnelave.CreeperHeal.block.HealJournal;
+import com.nitnelave.CreeperHeal.config.CfgVal;
+import com.nitnelave.CreeperHeal.config.CreeperConfig;
+
+/**
+ * Listener for the world events.
+ * 
+ * @author nitnelave
+ */
+public class WorldListener implements Listener
+{
+
+    /**
+     * Listener for the WorldLoadEvent. Read the world's configuration before
+     * it is needed by an explosion, and replace the blocks the heal journal
+     * kept for this world.
+     * 
+     * @param event
+     *            The WorldLoad event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event)
+    {
+        CreeperConfig.preloadWorld(event.getWorld());
+        if (CreeperConfig.getBool(CfgVal.JOURNAL))
+            HealJournal.replayWorld(event.getWorld());
+    }
+
+    /**
+     * Listener for the WorldUnloadEvent. Forget the world's object.
+     * 
+     * @param event
+     *            The WorldUnload event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event)
+    {
+        CreeperConfig.unloadWorld(event.getWorld());
+    }
+
+    /**
+     * Listener for the WorldSaveEvent. Compact the heal journal, since the
+     * world is now consistent on the disk.
+     * 
+     * @param event
+     *            The WorldSave event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldSave(WorldSaveEvent event)
+    {
+        if (CreeperConfig.getBool(CfgVal.JOURNAL))
+            HealJournal.checkpoint(false);
+    }
+
+}
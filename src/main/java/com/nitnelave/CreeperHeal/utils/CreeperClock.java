@@ -0,0 +1,85 @@
+package com.nitnelave.CreeperHeal.utils;
+
+/**
+ * The clock on which all the replacement delays are measured. It counts the
+ * server ticks, and gives the time in milliseconds as 50 ms per tick, so that
+ * checking the time does not allocate anything, and the delays follow the
+ * server's ticks rather than the wall clock.
+ *
+ * The clock can be sped up, to simulate long periods in a short time: every
+ * server tick then advances the clock by several ticks.
+ *
+ * @author nitnelave
+ *
+ */
+public abstract class CreeperClock
+{
+
+    private static final long MS_PER_TICK = 50;
+
+    /*
+     * Only written on the main thread, by the clock task.
+     */
+    private static volatile long ticks = 0;
+    private static volatile int speed = 1;
+    private static int taskId = -1;
+
+    /**
+     * Start the clock. The clock only moves once the server is running.
+     */
+    public static void init()
+    {
+        if (taskId != -1)
+            return;
+        taskId = CreeperScheduler.runTaskTimer(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ticks += speed;
+            }
+        }, 1, 1);
+    }
+
+    /**
+     * Get the current time of the clock.
+     *
+     * @return The time, in milliseconds since the start of the clock.
+     */
+    public static long now()
+    {
+        return ticks * MS_PER_TICK;
+    }
+
+    /**
+     * Get the number of ticks counted by the clock.
+     *
+     * @return The number of ticks since the start of the clock.
+     */
+    public static long getTicks()
+    {
+        return ticks;
+    }
+
+    /**
+     * Set the number of ticks the clock advances by at each server tick.
+     *
+     * @param speed
+     *            The speed of the clock, 1 for real time.
+     */
+    public static void setSpeed(int speed)
+    {
+        CreeperClock.speed = Math.max(1, speed);
+    }
+
+    /**
+     * Get the number of ticks the clock advances by at each server tick.
+     *
+     * @return The speed of the clock.
+     */
+    public static int getSpeed()
+    {
+        return speed;
+    }
+
+}
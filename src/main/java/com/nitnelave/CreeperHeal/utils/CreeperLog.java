@@ -3,9 +3,14 @@ package com.nitnelave.CreeperHeal.utils;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,11 +24,32 @@ import com.nitnelave.CreeperHeal.config.CreeperConfig;
 /**
  * This class is used for all the outputting to the console and to players.
  * 
+ * The messages recorded to the log file are queued, and written by a
+ * background thread in batches, so that the main thread never touches the
+ * file. If the queue is full, the messages are dropped and counted. When the
+ * file grows over the maximum size, it is renamed to log.old.txt and a new
+ * one is started.
+ * 
  * @author nitnelave
  * 
  */
 public abstract class CreeperLog
 {
+    /*
+     * Maximum number of messages waiting to be written.
+     */
+    private final static int QUEUE_CAPACITY = 4096;
+    /*
+     * Delay between two writes to the file, in ms.
+     */
+    private final static long FLUSH_INTERVAL = 500;
+    /*
+     * Messages waiting to be written, with their count, and the number of
+     * messages dropped since the last write.
+     */
+    private final static ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<Entry>();
+    private final static AtomicInteger queued = new AtomicInteger();
+    private final static AtomicLong dropped = new AtomicLong();
     /*
      * Log file, for outputting warnings to a file.
      */
@@ -36,11 +62,13 @@ public abstract class CreeperLog
      * The verbosity level. Initialized at -42 as an arbitrary value, to detect
      * that it hasn't been loaded from the config yet.
      */
-    private static int logLevel = -42;
+    private static volatile int logLevel = -42;
     /*
-     * Whether to output debug messages.
+     * Whether to output debug messages. Set when the config is loaded.
      */
-    private static boolean debug = false;
+    private static volatile boolean debug = false;
+    private static volatile boolean running = true;
+    private static Thread writer;
 
     static
     {
@@ -49,30 +77,115 @@ public abstract class CreeperLog
             FileUtils.createNewFile(warningLogFile);
 
         logFile = warningLogFile;
-        debug = CreeperConfig.getBool(CfgVal.DEBUG);
+        writer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                writeLoop();
+            }
+        }, "CreeperHeal log");
+        writer.setDaemon(true);
+        writer.start();
     }
 
     /**
-     * Write a message to the log file, prepended by the date.
+     * Write a message to the log file, prepended by the time. The message is
+     * written later, by the log thread.
      * 
      * @param message
      *            The message to be recorded.
      */
     public static void record(String message)
     {
+        if (queued.incrementAndGet() > QUEUE_CAPACITY)
+        {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.add(new Entry(System.currentTimeMillis(), message));
+    }
+
+    /**
+     * Write all the messages queued, and stop the log thread.
+     */
+    public static void close()
+    {
+        running = false;
+        LockSupport.unpark(writer);
         try
         {
-            FileWriter fstream = new FileWriter(logFile, true);
-            BufferedWriter out = new BufferedWriter(fstream);
-            out.write(getDate() + message);
-            out.newLine();
-            out.close();
-        } catch (Exception e)
+            writer.join();
+        } catch (InterruptedException e)
+        {
+            log.warning("[CreeperHeal] Interrupted while closing the log file");
+        }
+    }
+
+    /*
+     * Body of the log thread : every flush interval, write the messages
+     * queued since the last write.
+     */
+    private static void writeLoop()
+    {
+        DateFormat dateFormat = new SimpleDateFormat("HH:mm:ss ");
+        Date date = new Date();
+        boolean stop = false;
+        while (!stop)
         {
-            e.printStackTrace();
+            stop = !running;
+            if (!stop)
+                LockSupport.parkNanos(FLUSH_INTERVAL * 1000000L);
+            if (queue.isEmpty() && dropped.get() == 0)
+                continue;
+            try
+            {
+                rotate();
+                BufferedWriter out = new BufferedWriter(new FileWriter(logFile, true));
+                try
+                {
+                    Entry e;
+                    while ((e = queue.poll()) != null)
+                    {
+                        queued.decrementAndGet();
+                        date.setTime(e.time);
+                        out.write(dateFormat.format(date));
+                        out.write(e.message);
+                        out.newLine();
+                    }
+                    long lost = dropped.getAndSet(0);
+                    if (lost != 0)
+                    {
+                        date.setTime(System.currentTimeMillis());
+                        out.write(dateFormat.format(date) + "[WARNING] " + lost
+                                  + " messages were dropped, the log file could not keep up");
+                        out.newLine();
+                    }
+                } finally
+                {
+                    out.close();
+                }
+            } catch (IOException e)
+            {
+                log.warning("[CreeperHeal] Could not write to the log file : " + e.getMessage());
+            }
         }
     }
 
+    /*
+     * Move the log file to log.old.txt if it is over the maximum size.
+     */
+    private static void rotate()
+    {
+        long max = 1024L * CreeperConfig.getInt(CfgVal.LOG_MAX_SIZE);
+        if (max <= 0 || logFile.length() < max)
+            return;
+        File old = new File(logFile.getParentFile(), "log.old.txt");
+        if (old.exists() && !old.delete() || !logFile.renameTo(old))
+            log.warning("[CreeperHeal] Could not rotate the log file");
+    }
+
     /**
      * Output a warning to the console and to the log file.
      * 
@@ -96,15 +209,40 @@ public abstract class CreeperLog
      */
     public static void logInfo(String msg, int level)
     {
-        if (logLevel == -42)
-            logLevel = CreeperConfig.getInt(CfgVal.LOG_LEVEL);
-        if (level <= logLevel)
+        if (isLogged(level))
         {
             log.info("[CreeperHeal] " + msg);
             record("[INFO] " + msg);
         }
     }
 
+    /**
+     * Display an information message to the console, if the verbosity is high
+     * enough. The message is only formatted if it is displayed.
+     * 
+     * @param level
+     *            The corresponding verbosity of the message.
+     * @param format
+     *            The format of the message, as for String.format.
+     * @param args
+     *            The arguments of the format.
+     */
+    public static void logInfo(int level, String format, Object... args)
+    {
+        if (isLogged(level))
+            logInfo(String.format(format, args), level);
+    }
+
+    /*
+     * Get whether the messages of a verbosity are displayed.
+     */
+    private static boolean isLogged(int level)
+    {
+        if (logLevel == -42)
+            logLevel = CreeperConfig.getInt(CfgVal.LOG_LEVEL);
+        return level <= logLevel;
+    }
+
     /**
      * Output a SEVERE message to the console and record it.
      * 
@@ -118,26 +256,41 @@ public abstract class CreeperLog
     }
 
     /**
-     * Get a simple time formated date.
+     * Output a debug message, if the debug setting is true.
      * 
-     * @return a time with the HH:mm:ss format
+     * @param message
+     *            The message to output.
      */
-    private static String getDate()
+    public static void debug(String message)
     {
-        DateFormat dateFormat = new SimpleDateFormat("HH:mm:ss ");
-        return dateFormat.format(new Date());
+        if (debug)
+            log.info("[DEBUG] " + message);
     }
 
     /**
-     * Output a debug message, if the debug setting is true.
+     * Output a debug message, if the debug setting is true. The message is
+     * only formatted if it is displayed.
      * 
-     * @param message
-     *            The message to output.
+     * @param format
+     *            The format of the message, as for String.format.
+     * @param args
+     *            The arguments of the format.
      */
-    public static void debug(String message)
+    public static void debug(String format, Object... args)
     {
         if (debug)
-            log.info("[DEBUG] " + message);
+            debug(String.format(format, args));
+    }
+
+    /**
+     * Get whether the debug messages are displayed, to avoid building a
+     * message that would not be.
+     * 
+     * @return Whether the debug messages are displayed.
+     */
+    public static boolean isDebug()
+    {
+        return debug;
     }
 
     /**
@@ -152,6 +305,8 @@ public abstract class CreeperLog
      */
     public static void displayBlockLocation(Block block, boolean force)
     {
+        if (!force && !debug)
+            return;
         Location loc = block.getLocation();
         String s = block.getType() + " at " + loc.getBlockX() + "; " + loc.getBlockY() + "; "
                    + loc.getBlockZ();
@@ -167,4 +322,19 @@ public abstract class CreeperLog
         log.info("debug: " + debug);
     }
 
+    /*
+     * A message waiting to be written, with the time it was recorded at.
+     */
+    private static class Entry
+    {
+        private final long time;
+        private final String message;
+
+        private Entry(long time, String message)
+        {
+            this.time = time;
+            this.message = message;
+        }
+    }
+
 }
@@ -4,8 +4,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
@@ -188,9 +186,8 @@ public abstract class CreeperMessenger
     public static void warn(WarningCause cause, Player offender, boolean blocked, String material)
     {
         String message = CreeperMessenger.getMessage(cause, offender.getName(), offender.getWorld().getName(), blocked, material, false);
-        SimpleDateFormat f = new SimpleDateFormat("HH:mm:ss");
         if (CreeperConfig.getBool(CfgVal.LOG_WARNINGS))
-            CreeperLog.record("[" + f.format(new Date()) + "] " + ChatColor.stripColor(message));
+            CreeperLog.record(ChatColor.stripColor(message));
         message = ChatColor.RED + message;
         offender.sendMessage(CreeperMessenger.getMessage(cause, offender.getName(), offender.getWorld().getName(), blocked, material, true));
         for (CreeperPlayer cp : warnList)
@@ -0,0 +1,109 @@
+package com.nitnelave.CreeperHeal.utils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import com.nitnelave.CreeperHeal.CreeperHeal;
+
+/**
+ * The scheduler through which all the tasks of the plugin are run. By default,
+ * it is the server's scheduler, but another implementation can be set, so
+ * that the managers can be driven tick by tick without a server, for instance
+ * to measure the throughput of the replacement on a recorded load.
+ *
+ * @author nitnelave
+ *
+ */
+public abstract class CreeperScheduler
+{
+
+    /*
+     * The scheduler replacing the server's one, null if none.
+     */
+    private static BukkitScheduler scheduler = null;
+
+    /**
+     * Set the scheduler to run the tasks with, instead of the server's one.
+     * Must be set before the plugin schedules its first task.
+     *
+     * @param scheduler
+     *            The scheduler, or null to use the server's one.
+     */
+    public static void setScheduler(BukkitScheduler scheduler)
+    {
+        CreeperScheduler.scheduler = scheduler;
+    }
+
+    /*
+     * Get the scheduler in use.
+     */
+    private static BukkitScheduler get()
+    {
+        return scheduler == null ? Bukkit.getScheduler() : scheduler;
+    }
+
+    /**
+     * Run a task on the main thread at the next tick.
+     *
+     * @param task
+     *            The task to run.
+     * @return The id of the task.
+     */
+    public static int runTask(Runnable task)
+    {
+        return get().scheduleSyncDelayedTask(CreeperHeal.getInstance(), task);
+    }
+
+    /**
+     * Run a task on the main thread after a delay.
+     *
+     * @param task
+     *            The task to run.
+     * @param delay
+     *            The delay, in ticks.
+     * @return The id of the task.
+     */
+    public static int runTaskLater(Runnable task, long delay)
+    {
+        return get().scheduleSyncDelayedTask(CreeperHeal.getInstance(), task, delay);
+    }
+
+    /**
+     * Run a task on the main thread repeatedly.
+     *
+     * @param task
+     *            The task to run.
+     * @param delay
+     *            The delay before the first run, in ticks.
+     * @param period
+     *            The delay between two runs, in ticks.
+     * @return The id of the task.
+     */
+    public static int runTaskTimer(Runnable task, long delay, long period)
+    {
+        return get().scheduleSyncRepeatingTask(CreeperHeal.getInstance(), task, delay, period);
+    }
+
+    /**
+     * Run a task in another thread.
+     *
+     * @param task
+     *            The task to run.
+     */
+    public static void runTaskAsynchronously(Runnable task)
+    {
+        get().runTaskAsynchronously(CreeperHeal.getInstance(), task);
+    }
+
+    /**
+     * Cancel a task.
+     *
+     * @param taskId
+     *            The id of the task.
+     */
+    public static void cancelTask(int taskId)
+    {
+        get().cancelTask(taskId);
+    }
+
+}
@@ -0,0 +1,281 @@
+package com.nitnelave.CreeperHeal.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.nitnelave.CreeperHeal.CreeperHeal;
+import com.nitnelave.CreeperHeal.block.BurntBlockManager;
+import com.nitnelave.CreeperHeal.block.ExplodedBlockManager;
+import com.nitnelave.CreeperHeal.config.CfgVal;
+import com.nitnelave.CreeperHeal.config.CreeperConfig;
+
+/**
+ * Counters and timers of the work done by the plugin, displayed by the stats
+ * command and optionally written to stats.txt periodically. Updating a counter
+ * or a timer does not lock nor allocate anything.
+ *
+ * @author nitnelave
+ *
+ */
+public abstract class CreeperStats
+{
+
+    /**
+     * Blocks recorded in an explosion or a fire.
+     */
+    public final static Counter RECORDED = new Counter();
+    /**
+     * Blocks written back into the world.
+     */
+    public final static Counter REPLACED = new Counter();
+    /**
+     * Blocks whose replacement was delayed because their support was missing.
+     */
+    public final static Counter DELAYED = new Counter();
+    /**
+     * Blocks not replaced because their position was occupied.
+     */
+    public final static Counter DROPPED = new Counter();
+    /**
+     * Explosions joined to a previous explosion.
+     */
+    public final static Counter MERGES = new Counter();
+    /**
+     * Time spent recording the blocks of an explosion.
+     */
+    public final static Timer CAPTURE = new Timer();
+    /**
+     * Time spent in the explosion replacement task.
+     */
+    public final static Timer EXPLOSIONS = new Timer();
+    /**
+     * Time spent in the burnt blocks replacement task.
+     */
+    public final static Timer BURNT = new Timer();
+
+    /*
+     * The time spent in the listeners, by name. Only modified on the main
+     * thread, when the listeners are registered.
+     */
+    private final static Map<String, Timer> listeners = new TreeMap<String, Timer>();
+    private final static File DUMP_FILE = new File(CreeperHeal.getCHFolder() + "/stats.txt");
+
+    /**
+     * Start writing the stats to stats.txt periodically, if enabled in the
+     * config.
+     */
+    public static void init()
+    {
+        int interval = CreeperConfig.getInt(CfgVal.STATS_DUMP_INTERVAL);
+        if (interval <= 0)
+            return;
+        CreeperScheduler.runTaskTimer(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                dump();
+            }
+        }, 1200L * interval, 1200L * interval);
+    }
+
+    /**
+     * Get the timer of a listener, created the first time.
+     *
+     * @param name
+     *            The name of the listener.
+     * @return The timer of the listener.
+     */
+    public static Timer getListenerTimer(String name)
+    {
+        Timer t = listeners.get(name);
+        if (t == null)
+        {
+            t = new Timer();
+            listeners.put(name, t);
+        }
+        return t;
+    }
+
+    /**
+     * Get the current stats, as lines of text. Must be called on the main
+     * thread, as it counts the blocks waiting to be replaced.
+     *
+     * @return The lines of the report.
+     */
+    public static List<String> getReport()
+    {
+        List<String> lines = new ArrayList<String>();
+        lines.add("Blocks recorded: " + RECORDED.sum() + ", replaced: " + REPLACED.sum() + ", delayed: "
+                  + DELAYED.sum() + ", dropped: " + DROPPED.sum());
+        lines.add("Explosions merged: " + MERGES.sum());
+
+        Map<String, int[]> explosions = new TreeMap<String, int[]>();
+        ExplodedBlockManager.countPending(explosions);
+        for (Map.Entry<String, int[]> e : explosions.entrySet())
+            lines.add("Pending in " + e.getKey() + ": " + e.getValue()[0] + " explosions, " + e.getValue()[1]
+                      + " blocks");
+        Map<String, int[]> burnt = new TreeMap<String, int[]>();
+        BurntBlockManager.countPending(burnt);
+        for (Map.Entry<String, int[]> e : burnt.entrySet())
+            lines.add("Burnt in " + e.getKey() + ": " + e.getValue()[0] + " blocks");
+
+        lines.add("Explosion capture: " + CAPTURE);
+        lines.add("Explosion task: " + EXPLOSIONS);
+        lines.add("Burnt task: " + BURNT);
+        for (Map.Entry<String, Timer> e : listeners.entrySet())
+            lines.add(e.getKey() + ": " + e.getValue());
+        return lines;
+    }
+
+    /*
+     * Build the report, and write it to the file in another thread.
+     */
+    private static void dump()
+    {
+        final List<String> lines = getReport();
+        final Date date = new Date();
+        CreeperScheduler.runTaskAsynchronously(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    BufferedWriter out = new BufferedWriter(new FileWriter(DUMP_FILE));
+                    try
+                    {
+                        out.write(date.toString());
+                        out.newLine();
+                        for (String line : lines)
+                        {
+                            out.write(line);
+                            out.newLine();
+                        }
+                    } finally
+                    {
+                        out.close();
+                    }
+                } catch (IOException e)
+                {
+                    CreeperLog.warning("Could not write the stats : " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * A counter, split in cells so that threads incrementing it at the same
+     * time do not contend on the same value. The cells are spaced in the
+     * array so that they are on different cache lines.
+     */
+    public static class Counter
+    {
+        private final static int CELLS = 8, SPACING = 8;
+        private final AtomicLongArray cells = new AtomicLongArray(CELLS * SPACING);
+
+        /**
+         * Add one to the counter.
+         */
+        public void increment()
+        {
+            add(1);
+        }
+
+        /**
+         * Add a value to the counter.
+         *
+         * @param n
+         *            The value to add.
+         */
+        public void add(long n)
+        {
+            cells.addAndGet(((int) Thread.currentThread().getId() & (CELLS - 1)) * SPACING, n);
+        }
+
+        /**
+         * Get the value of the counter.
+         *
+         * @return The sum of the cells.
+         */
+        public long sum()
+        {
+            long sum = 0;
+            for (int i = 0; i < CELLS; i++)
+                sum += cells.get(i * SPACING);
+            return sum;
+        }
+    }
+
+    /**
+     * A histogram of durations in nanoseconds, counted in buckets of powers of
+     * two.
+     */
+    public static class Timer
+    {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final Counter total = new Counter();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Record a duration.
+         *
+         * @param nanos
+         *            The duration, in nanoseconds.
+         */
+        public void record(long nanos)
+        {
+            if (nanos < 0)
+                nanos = 0;
+            buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+            total.add(nanos);
+            long m = max.get();
+            while (nanos > m && !max.compareAndSet(m, nanos))
+                m = max.get();
+        }
+
+        /*
+         * Get an upper bound of the duration under which the fraction of the
+         * durations recorded falls.
+         */
+        private long percentile(long count, double fraction)
+        {
+            long target = (long) Math.ceil(count * fraction), seen = 0;
+            for (int i = 0; i < 64; i++)
+            {
+                seen += buckets.get(i);
+                if (seen >= target)
+                    return Math.min(max.get(), (2L << i) - 1);
+            }
+            return max.get();
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString()
+        {
+            long count = 0;
+            for (int i = 0; i < 64; i++)
+                count += buckets.get(i);
+            if (count == 0)
+                return "no calls";
+            return count + " calls, mean " + total.sum() / count / 1000 + "us, p50 < "
+                   + percentile(count, 0.5) / 1000 + "us, p99 < " + percentile(count, 0.99) / 1000
+                   + "us, max " + max.get() / 1000 + "us";
+        }
+    }
+
+}
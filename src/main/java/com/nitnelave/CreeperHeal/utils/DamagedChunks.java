@@ -0,0 +1,100 @@
+package com.nitnelave.CreeperHeal.utils;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+/**
+ * The set of chunks close to an explosion, a fire or a block whose fall is
+ * prevented, i.e. covered by an element of a NeighborFinder. Used by the
+ * physics listeners to ignore the events far from any damage with a single
+ * lookup, before querying the neighbor indexes.
+ *
+ * @author nitnelave
+ *
+ */
+public abstract class DamagedChunks
+{
+
+    /*
+     * For each world, the number of elements covering each chunk.
+     */
+    private final static Map<World, LongHashMap<int[]>> chunks = new IdentityHashMap<World, LongHashMap<int[]>>();
+
+    /**
+     * Get whether the block is in a chunk close to some damage.
+     *
+     * @param block
+     *            The block to test.
+     * @return False if the block is far from any damage.
+     */
+    public static boolean isDamaged(Block block)
+    {
+        LongHashMap<int[]> map = chunks.get(block.getWorld());
+        return map != null && map.get(getKey(block.getX() >> 4, block.getZ() >> 4)) != null;
+    }
+
+    /*
+     * Mark the chunks in the range as covered by one more element.
+     */
+    static void add(World world, int minX, int maxX, int minZ, int maxZ)
+    {
+        LongHashMap<int[]> map = chunks.get(world);
+        if (map == null)
+        {
+            map = new LongHashMap<int[]>();
+            chunks.put(world, map);
+        }
+        for (int x = minX; x <= maxX; x++)
+            for (int z = minZ; z <= maxZ; z++)
+            {
+                long key = getKey(x, z);
+                int[] count = map.get(key);
+                if (count == null)
+                    map.put(key, new int[] { 1 });
+                else
+                    count[0]++;
+            }
+    }
+
+    /*
+     * Mark the chunks in the range as covered by one less element.
+     */
+    static void remove(World world, int minX, int maxX, int minZ, int maxZ)
+    {
+        LongHashMap<int[]> map = chunks.get(world);
+        if (map == null)
+            return;
+        for (int x = minX; x <= maxX; x++)
+            for (int z = minZ; z <= maxZ; z++)
+            {
+                long key = getKey(x, z);
+                int[] count = map.get(key);
+                if (count != null && --count[0] <= 0)
+                    map.remove(key);
+            }
+        if (map.isEmpty())
+            chunks.remove(world);
+    }
+
+    /**
+     * Get the number of chunks marked as damaged, in all the worlds.
+     *
+     * @return The number of chunks.
+     */
+    public static int size()
+    {
+        int size = 0;
+        for (LongHashMap<int[]> map : chunks.values())
+            size += map.size();
+        return size;
+    }
+
+    private static long getKey(int x, int z)
+    {
+        return (long) x << 32 | z & 0xFFFFFFFFL;
+    }
+
+}
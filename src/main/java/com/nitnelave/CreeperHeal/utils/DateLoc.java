@@ -1,7 +1,5 @@
 package com.nitnelave.CreeperHeal.utils;
 
-import java.util.Date;
-
 import org.bukkit.Location;
 import org.bukkit.World;
 
@@ -13,18 +11,18 @@ import org.bukkit.World;
  */
 public class DateLoc
 {
-    private final Date date;
+    private final long date;
     private final Location location;
 
     /**
      * Basic constructor.
      * 
      * @param date
-     *            The date to be stored.
+     *            The date to be stored, on the CreeperClock.
      * @param location
      *            The location to be stored.
      */
-    public DateLoc(Date date, Location location)
+    public DateLoc(long date, Location location)
     {
         this.date = date;
         this.location = location;
@@ -35,7 +33,7 @@ public class DateLoc
      * 
      * @return The stored date.
      */
-    public Date getTime()
+    public long getTime()
     {
         return date;
     }
@@ -59,7 +59,9 @@ public class FileUtils
     {
         if (!createNewFile(file))
             return;
-        InputStream in = CreeperHeal.getInstance().getResource(source);
+        CreeperHeal plugin = CreeperHeal.getInstance();
+        InputStream in = plugin == null ? CreeperHeal.class.getClassLoader().getResourceAsStream(source)
+                                        : plugin.getResource(source);
         if (in == null)
             throw new IllegalArgumentException("The embedded resource '" + source
                                                + "' cannot be found.");
@@ -0,0 +1,194 @@
+package com.nitnelave.CreeperHeal.utils;
+
+import java.util.Arrays;
+
+/**
+ * A map from primitive longs to objects, typically from packed positions (see
+ * PackedLocation). Unlike a HashMap with Long keys, looking up a value does
+ * not allocate anything.
+ *
+ * @param <V>
+ *            The type of the values.
+ * @author nitnelave
+ *
+ */
+public class LongHashMap<V>
+{
+
+    /*
+     * Marks an empty slot. The value for this key is stored separately.
+     */
+    private final static long FREE = 0;
+
+    private long[] keys;
+    private Object[] values;
+    private int size = 0;
+    private V freeValue = null;
+
+    /**
+     * Constructor.
+     */
+    public LongHashMap()
+    {
+        keys = new long[16];
+        values = new Object[16];
+    }
+
+    /**
+     * Get the value associated with a key.
+     *
+     * @param key
+     *            The key.
+     * @return The value, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key)
+    {
+        if (key == FREE)
+            return freeValue;
+        int i = indexOf(keys, key);
+        return keys[i] == key ? (V) values[i] : null;
+    }
+
+    /**
+     * Associate a value with a key.
+     *
+     * @param key
+     *            The key.
+     * @param value
+     *            The value, not null.
+     * @return The value previously associated with the key, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value)
+    {
+        if (key == FREE)
+        {
+            V old = freeValue;
+            if (old == null)
+                size++;
+            freeValue = value;
+            return old;
+        }
+        int i = indexOf(keys, key);
+        V old = (V) values[i];
+        keys[i] = key;
+        values[i] = value;
+        if (old == null && ++size * 2 > keys.length)
+            rehash();
+        return old;
+    }
+
+    /**
+     * Remove the value associated with a key.
+     *
+     * @param key
+     *            The key.
+     * @return The value removed, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key)
+    {
+        if (key == FREE)
+        {
+            V old = freeValue;
+            if (old != null)
+                size--;
+            freeValue = null;
+            return old;
+        }
+        int i = indexOf(keys, key);
+        if (keys[i] != key)
+            return null;
+        V old = (V) values[i];
+        keys[i] = FREE;
+        values[i] = null;
+        size--;
+        /*
+         * Shift back the following entries of the cluster, so that lookups
+         * do not stop at the freed slot.
+         */
+        int mask = keys.length - 1;
+        for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask)
+        {
+            int k = hash(keys[j]) & mask;
+            if ((j > i && (k <= i || k > j)) || (j < i && k <= i && k > j))
+            {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                keys[j] = FREE;
+                values[j] = null;
+                i = j;
+            }
+        }
+        return old;
+    }
+
+    /**
+     * Get the number of entries in the map.
+     *
+     * @return The number of entries.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Get whether the map is empty.
+     *
+     * @return Whether the map is empty.
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Remove all the entries, keeping the table.
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, FREE);
+        Arrays.fill(values, null);
+        freeValue = null;
+        size = 0;
+    }
+
+    /*
+     * Double the size of the table.
+     */
+    private void rehash()
+    {
+        long[] newKeys = new long[keys.length * 2];
+        Object[] newValues = new Object[values.length * 2];
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] != FREE)
+            {
+                int j = indexOf(newKeys, keys[i]);
+                newKeys[j] = keys[i];
+                newValues[j] = values[i];
+            }
+        keys = newKeys;
+        values = newValues;
+    }
+
+    /*
+     * Get the slot holding the key, or the free slot where it would go.
+     */
+    private static int indexOf(long[] t, long key)
+    {
+        int mask = t.length - 1;
+        int i = hash(key) & mask;
+        while (t[i] != FREE && t[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    private static int hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+}
@@ -0,0 +1,188 @@
+package com.nitnelave.CreeperHeal.utils;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive longs, typically packed block positions (see
+ * PackedLocation). Unlike a HashSet of Long, adding and looking up a value
+ * does not allocate anything.
+ *
+ * @author nitnelave
+ *
+ */
+public class LongHashSet
+{
+
+    /*
+     * Marks an empty slot. The value itself is stored separately.
+     */
+    private final static long FREE = 0;
+
+    private long[] table;
+    private int size = 0;
+    private boolean hasFree = false;
+
+    /**
+     * Constructor.
+     */
+    public LongHashSet()
+    {
+        this(16);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param expected
+     *            The number of values expected, to size the table.
+     */
+    public LongHashSet(int expected)
+    {
+        int capacity = 16;
+        while (capacity < expected * 2)
+            capacity <<= 1;
+        table = new long[capacity];
+    }
+
+    /**
+     * Add a value to the set.
+     *
+     * @param value
+     *            The value to add.
+     * @return False if the value was already in the set.
+     */
+    public boolean add(long value)
+    {
+        if (value == FREE)
+        {
+            if (hasFree)
+                return false;
+            hasFree = true;
+            size++;
+            return true;
+        }
+        int i = indexOf(table, value);
+        if (table[i] == value)
+            return false;
+        table[i] = value;
+        if (++size * 2 > table.length)
+            rehash();
+        return true;
+    }
+
+    /**
+     * Get whether a value is in the set.
+     *
+     * @param value
+     *            The value to look for.
+     * @return Whether the value is in the set.
+     */
+    public boolean contains(long value)
+    {
+        if (value == FREE)
+            return hasFree;
+        return table[indexOf(table, value)] == value;
+    }
+
+    /**
+     * Remove a value from the set.
+     *
+     * @param value
+     *            The value to remove.
+     * @return False if the value was not in the set.
+     */
+    public boolean remove(long value)
+    {
+        if (value == FREE)
+        {
+            if (!hasFree)
+                return false;
+            hasFree = false;
+            size--;
+            return true;
+        }
+        int i = indexOf(table, value);
+        if (table[i] != value)
+            return false;
+        table[i] = FREE;
+        size--;
+        /*
+         * Shift back the following values of the cluster, so that lookups
+         * do not stop at the freed slot.
+         */
+        int mask = table.length - 1;
+        for (int j = (i + 1) & mask; table[j] != FREE; j = (j + 1) & mask)
+        {
+            long v = table[j];
+            int k = hash(v) & mask;
+            if ((j > i && (k <= i || k > j)) || (j < i && k <= i && k > j))
+            {
+                table[i] = v;
+                table[j] = FREE;
+                i = j;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of values in the set.
+     *
+     * @return The number of values.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Get whether the set is empty.
+     *
+     * @return Whether the set is empty.
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Remove all the values, keeping the table.
+     */
+    public void clear()
+    {
+        Arrays.fill(table, FREE);
+        hasFree = false;
+        size = 0;
+    }
+
+    /*
+     * Double the size of the table.
+     */
+    private void rehash()
+    {
+        long[] newTable = new long[table.length * 2];
+        for (long v : table)
+            if (v != FREE)
+                newTable[indexOf(newTable, v)] = v;
+        table = newTable;
+    }
+
+    /*
+     * Get the slot holding the value, or the free slot where it would go.
+     */
+    private static int indexOf(long[] t, long value)
+    {
+        int mask = t.length - 1;
+        int i = hash(value) & mask;
+        while (t[i] != FREE && t[i] != value)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    private static int hash(long value)
+    {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+}
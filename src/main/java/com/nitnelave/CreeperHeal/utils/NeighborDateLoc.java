@@ -1,12 +1,5 @@
 package com.nitnelave.CreeperHeal.utils;
 
-import java.util.Date;
-import java.util.Iterator;
-import java.util.LinkedList;
-
-import org.bukkit.Location;
-import org.bukkit.World;
-
 import com.nitnelave.CreeperHeal.config.CfgVal;
 import com.nitnelave.CreeperHeal.config.CreeperConfig;
 
@@ -18,52 +11,46 @@ import com.nitnelave.CreeperHeal.config.CreeperConfig;
 public class NeighborDateLoc extends NeighborFinder<DateLoc>
 {
 
+    private static final int DISTANCE_NEAR = 10;
+
+    /*
+     * The locations older than this date are removed when cleaning.
+     */
+    private long delay;
+
     /*
      * (non-Javadoc)
      * 
-     * @see
-     * com.nitnelave.CreeperHeal.utils.NeighborFinder#getNeighbor(org.bukkit
-     * .Location, java.util.LinkedList)
+     * @see com.nitnelave.CreeperHeal.utils.NeighborFinder#clean()
      */
     @Override
-    protected DateLoc getNeighbor(Location loc, LinkedList<DateLoc> list)
+    public void clean()
     {
-        if (list != null)
-        {
-            World w = loc.getWorld();
-            for (DateLoc dl : list)
-                if (dl.getWorld() == w && loc.distance(dl.getLocation()) < 10)
-                    return dl;
-        }
-        return null;
+        delay = CreeperClock.now() - 200L * CreeperConfig.getInt(CfgVal.BLOCK_PER_BLOCK_INTERVAL);
+        super.clean();
     }
 
     /*
      * (non-Javadoc)
      * 
-     * @see com.nitnelave.CreeperHeal.utils.NeighborFinder#clean()
+     * @see
+     * com.nitnelave.CreeperHeal.utils.NeighborFinder#isObsolete(java.lang.Object)
      */
     @Override
-    public void clean()
+    protected boolean isObsolete(DateLoc dl)
+    {
+        return dl.getTime() < delay;
+    }
+
+    /**
+     * Adds a location to the index.
+     * 
+     * @param dl
+     *            The location to add.
+     */
+    public void addElement(DateLoc dl)
     {
-        Iterator<LinkedList<DateLoc>> iter = map.values().iterator();
-        Date delay = new Date(new Date().getTime() - 200
-                              * CreeperConfig.getInt(CfgVal.BLOCK_PER_BLOCK_INTERVAL));
-        while (iter.hasNext())
-        {
-            LinkedList<DateLoc> list = iter.next();
-            Iterator<DateLoc> it = list.iterator();
-            while (it.hasNext())
-            {
-                Date date = it.next().getTime();
-                if (date.before(delay))
-                    it.remove();
-                else
-                    break;
-            }
-            if (list.isEmpty())
-                iter.remove();
-        }
+        addElement(dl, dl.getLocation(), DISTANCE_NEAR);
     }
 
 }
@@ -1,15 +1,10 @@
 package com.nitnelave.CreeperHeal.utils;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-
-import org.bukkit.Location;
-import org.bukkit.World;
-
 import com.nitnelave.CreeperHeal.block.CreeperExplosion;
 
 /**
- * Implementation of the NeighborFinder for explosions.
+ * Implementation of the NeighborFinder for explosions. A location is a
+ * neighbor of an explosion if it is in its radius.
  * 
  * @see com.nitnelave.CreeperHeal.utils.NeighborFinder
  * @see com.nitnelave.CreeperHeal.block.CreeperExplosion
@@ -23,59 +18,24 @@ public class NeighborExplosion extends NeighborFinder<CreeperExplosion>
      * (non-Javadoc)
      * 
      * @see
-     * com.nitnelave.CreeperHeal.utils.NeighborFinder#getNeighbor(org.bukkit
-     * .Location, java.util.LinkedList)
-     */
-    @Override
-    protected CreeperExplosion getNeighbor(Location loc, LinkedList<CreeperExplosion> list)
-    {
-        if (list != null)
-        {
-            World w = loc.getWorld();
-            for (CreeperExplosion ex : list)
-            {
-                Location l = ex.getLocation();
-                if (l.getWorld() == w && loc.distance(ex.getLocation()) < ex.getRadius())
-                    return ex;
-            }
-        }
-        return null;
-    }
-
-    /*
-     * (non-Javadoc)
-     * 
-     * @see com.nitnelave.CreeperHeal.utils.NeighborFinder#clean()
+     * com.nitnelave.CreeperHeal.utils.NeighborFinder#isObsolete(java.lang.Object)
      */
     @Override
-    public void clean()
+    protected boolean isObsolete(CreeperExplosion ex)
     {
-        Iterator<LinkedList<CreeperExplosion>> iter = map.values().iterator();
-        while (iter.hasNext())
-        {
-            LinkedList<CreeperExplosion> list = iter.next();
-            Iterator<CreeperExplosion> it = list.iterator();
-            while (it.hasNext())
-            {
-                CreeperExplosion e = it.next();
-                if (e.isEmpty())
-                    it.remove();
-            }
-            if (list.isEmpty())
-                iter.remove();
-        }
+        return ex.isEmpty();
     }
 
     /**
-     * Remove an CreeperExplosion.
+     * Add an explosion to the index, or update its position and radius if it
+     * is already in the index.
      * 
      * @param ex
-     *            The explosion to remove.
+     *            The explosion to add.
      */
-    public void removeElement(CreeperExplosion ex)
+    public void addElement(CreeperExplosion ex)
     {
-        Location l = ex.getLocation();
-        removeElement(ex, l.getX(), l.getZ());
+        addElement(ex, ex.getLocation(), ex.getRadius());
     }
 
 }
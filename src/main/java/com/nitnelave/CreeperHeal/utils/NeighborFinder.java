@@ -1,14 +1,20 @@
 package com.nitnelave.CreeperHeal.utils;
 
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.bukkit.Location;
+import org.bukkit.World;
 
 /**
- * 2-D map, allowing for fast neighbor search. The map is divided in zones, and
- * in each zone there is a list of Location.
- * 
+ * 2-D map, allowing for fast neighbor search. Each world is divided in square
+ * cells, identified by a packed long. Every element covers a sphere, and is
+ * stored in all the cells its sphere overlaps, so that finding the neighbors
+ * of a location only looks at the location's cell. The chunks covered by the
+ * elements are also marked in DamagedChunks.
+ *
  * @param <T>
  *            The type of the data stored for each point.
  * @author nitnelave
@@ -17,62 +23,87 @@ public abstract class NeighborFinder<T>
 {
 
     /**
-     * The size of each zone.
+     * The size of each cell, as a power of 2.
      */
-    private static final int BLOCK_SIZE = 64;
-    protected HashMap<Point, LinkedList<T>> map = new HashMap<Point, LinkedList<T>>();
+    private static final int CELL_SHIFT = 6;
+
+    private final Map<World, LongHashMap<Cell>> grids = new IdentityHashMap<World, LongHashMap<Cell>>();
+    /*
+     * Where each element is stored, to remove it.
+     */
+    private final Map<T, Entry> entries = new IdentityHashMap<T, Entry>();
 
     /**
-     * Add an element to the map. It is placed in the correct zone, created if
-     * necessary.
-     * 
+     * Add an element to the map. If the element was already in the map, it is
+     * moved.
+     *
      * @param el
      *            The element.
-     * @param x
-     *            The x coordinate.
-     * @param y
-     *            The y coordinate.
+     * @param loc
+     *            The center of the element.
+     * @param radius
+     *            The distance under which a location is a neighbor of the
+     *            element.
      */
-    public void addElement(T el, double x, double y)
+    protected void addElement(T el, Location loc, double radius)
     {
         if (el == null)
             return;
-        Point p = new Point((int) (x / BLOCK_SIZE), (int) (y / BLOCK_SIZE));
-        LinkedList<T> list = map.get(p);
-        if (list == null)
+        removeElement(el);
+        LongHashMap<Cell> grid = grids.get(loc.getWorld());
+        if (grid == null)
         {
-            list = new LinkedList<T>();
-            map.put(p, list);
+            grid = new LongHashMap<Cell>();
+            grids.put(loc.getWorld(), grid);
         }
-        list.add(el);
+        Entry e = new Entry(loc, radius);
+        for (int x = e.minX; x <= e.maxX; x++)
+            for (int z = e.minZ; z <= e.maxZ; z++)
+            {
+                long key = getKey(x, z);
+                Cell cell = grid.get(key);
+                if (cell == null)
+                {
+                    cell = new Cell();
+                    grid.put(key, cell);
+                }
+                cell.add(el, e);
+            }
+        entries.put(el, e);
+        DamagedChunks.add(e.world, e.minChunkX, e.maxChunkX, e.minChunkZ, e.maxChunkZ);
     }
 
     /**
-     * Remove an element from the map. It must be in the zone at the x, y
-     * coordinate.
-     * 
+     * Remove an element from the map.
+     *
      * @param el
      *            The element to remove.
-     * @param x
-     *            The x coordinate for the zone.
-     * @param y
-     *            The y coordinate for the zone.
      */
-    public void removeElement(T el, double x, double y)
+    public void removeElement(T el)
     {
-        Point p = new Point((int) (x / BLOCK_SIZE), (int) (y / BLOCK_SIZE));
-        LinkedList<T> list = map.get(p);
-        if (list == null)
+        Entry e = entries.remove(el);
+        if (e == null)
+            return;
+        DamagedChunks.remove(e.world, e.minChunkX, e.maxChunkX, e.minChunkZ, e.maxChunkZ);
+        LongHashMap<Cell> grid = grids.get(e.world);
+        if (grid == null)
             return;
-        list.remove(el);
-        if (list.isEmpty())
-            map.remove(p);
+        for (int x = e.minX; x <= e.maxX; x++)
+            for (int z = e.minZ; z <= e.maxZ; z++)
+            {
+                long key = getKey(x, z);
+                Cell cell = grid.get(key);
+                if (cell != null && cell.remove(el) && cell.size == 0)
+                    grid.remove(key);
+            }
+        if (grid.isEmpty())
+            grids.remove(e.world);
     }
 
     /**
-     * Get whether the location is "close" to an element. The actual definition
-     * of "close" is in the overridden methods of the children classes.
-     * 
+     * Get whether the location is "close" to an element, i.e. if it is in
+     * the element's radius.
+     *
      * @param loc
      *            The point to check for neighbors.
      * @return Whether the location is close to an element.
@@ -86,53 +117,166 @@ public abstract class NeighborFinder<T>
      * Get a neighbor of the location provided. It is not guaranteed to be the
      * closest, but it is an element which satisfies the condition of a
      * neighbor.
-     * 
+     *
      * @param loc
      *            The location to check for neighbors.
      * @return A neighboring element, null if no such element exists.
      */
+    @SuppressWarnings("unchecked")
     public T getNeighbor(Location loc)
     {
-        int x = (int) (loc.getX() / BLOCK_SIZE), y = (int) (loc.getZ() / BLOCK_SIZE);
-        LinkedList<T> list = map.get(new Point(x, y));
-        T neighbor = getNeighbor(loc, list);
-        if (neighbor != null)
-            return neighbor;
-        for (int i = -1; i < 2; i++)
-            for (int j = -1; j < 2; j++)
-            {
-                if (i == 0 && j == 0)
-                    continue;
-                list = map.get(new Point(x + i, y + j));
-                neighbor = getNeighbor(loc, list);
-                if (neighbor != null)
-                    return neighbor;
-            }
+        LongHashMap<Cell> grid = grids.get(loc.getWorld());
+        if (grid == null)
+            return null;
+        double x = loc.getX(), y = loc.getY(), z = loc.getZ();
+        Cell cell = grid.get(getKey(getCell(x), getCell(z)));
+        if (cell == null)
+            return null;
+        double[] s = cell.spheres;
+        for (int i = 0; i < cell.size; i++)
+        {
+            double dx = x - s[4 * i], dy = y - s[4 * i + 1], dz = z - s[4 * i + 2];
+            if (dx * dx + dy * dy + dz * dz < s[4 * i + 3])
+                return (T) cell.elements[i];
+        }
         return null;
     }
 
-    protected abstract T getNeighbor(Location loc, LinkedList<T> list);
-
     /**
-     * Get whether the map is completely empty (no zones).
-     * 
+     * Get whether the map is completely empty.
+     *
      * @return Whether the map is empty.
      */
     public boolean isEmpty()
     {
-        return map.isEmpty();
+        return entries.isEmpty();
     }
 
     /**
-     * Clean the map by removing useless elements in zones, and empty zones.
+     * Get the number of elements in the map.
+     *
+     * @return The number of elements.
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Clean the map by removing useless elements.
+     */
+    public void clean()
+    {
+        List<T> obsolete = new ArrayList<T>();
+        for (T el : entries.keySet())
+            if (isObsolete(el))
+                obsolete.add(el);
+        for (T el : obsolete)
+            removeElement(el);
+    }
+
+    /**
+     * Get whether an element can be removed from the map when cleaning.
+     *
+     * @param el
+     *            The element.
+     * @return Whether the element is not useful anymore.
      */
-    public abstract void clean();
+    protected abstract boolean isObsolete(T el);
 
     /**
      * Clear the map of all elements.
      */
     public void clear()
     {
-        map.clear();
+        for (Entry e : entries.values())
+            DamagedChunks.remove(e.world, e.minChunkX, e.maxChunkX, e.minChunkZ, e.maxChunkZ);
+        grids.clear();
+        entries.clear();
+    }
+
+    private static int getCell(double coord)
+    {
+        return (int) Math.floor(coord) >> CELL_SHIFT;
+    }
+
+    private static long getKey(int x, int z)
+    {
+        return (long) x << 32 | z & 0xFFFFFFFFL;
+    }
+
+    /*
+     * The sphere covered by an element, and the cells it overlaps.
+     */
+    private static class Entry
+    {
+        private final World world;
+        private final double x, y, z, radiusSquared;
+        private final int minX, maxX, minZ, maxZ;
+        private final int minChunkX, maxChunkX, minChunkZ, maxChunkZ;
+
+        private Entry(Location loc, double radius)
+        {
+            world = loc.getWorld();
+            x = loc.getX();
+            y = loc.getY();
+            z = loc.getZ();
+            radiusSquared = radius * radius;
+            minX = getCell(x - radius);
+            maxX = getCell(x + radius);
+            minZ = getCell(z - radius);
+            maxZ = getCell(z + radius);
+            minChunkX = (int) Math.floor(x - radius) >> 4;
+            maxChunkX = (int) Math.floor(x + radius) >> 4;
+            minChunkZ = (int) Math.floor(z - radius) >> 4;
+            maxChunkZ = (int) Math.floor(z + radius) >> 4;
+        }
+    }
+
+    /*
+     * The elements overlapping a cell, with their spheres stored as x, y, z,
+     * radius squared.
+     */
+    private static class Cell
+    {
+        private Object[] elements = new Object[4];
+        private double[] spheres = new double[16];
+        private int size = 0;
+
+        private void add(Object el, Entry e)
+        {
+            if (size == elements.length)
+            {
+                Object[] newElements = new Object[size * 2];
+                System.arraycopy(elements, 0, newElements, 0, size);
+                elements = newElements;
+                double[] newSpheres = new double[size * 8];
+                System.arraycopy(spheres, 0, newSpheres, 0, size * 4);
+                spheres = newSpheres;
+            }
+            elements[size] = el;
+            spheres[4 * size] = e.x;
+            spheres[4 * size + 1] = e.y;
+            spheres[4 * size + 2] = e.z;
+            spheres[4 * size + 3] = e.radiusSquared;
+            size++;
+        }
+
+        /*
+         * Remove an element, replacing it by the last one.
+         */
+        private boolean remove(Object el)
+        {
+            for (int i = 0; i < size; i++)
+                if (elements[i] == el)
+                {
+                    size--;
+                    elements[i] = elements[size];
+                    System.arraycopy(spheres, 4 * size, spheres, 4 * i, 4);
+                    elements[size] = null;
+                    return true;
+                }
+            return false;
+        }
     }
 }
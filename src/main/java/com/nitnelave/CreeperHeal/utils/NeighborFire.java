@@ -1,12 +1,5 @@
 package com.nitnelave.CreeperHeal.utils;
 
-import java.util.Date;
-import java.util.Iterator;
-import java.util.LinkedList;
-
-import org.bukkit.Location;
-import org.bukkit.World;
-
 import com.nitnelave.CreeperHeal.block.CreeperBurntBlock;
 import com.nitnelave.CreeperHeal.config.CfgVal;
 import com.nitnelave.CreeperHeal.config.CreeperConfig;
@@ -25,24 +18,9 @@ public class NeighborFire extends NeighborFinder<CreeperBurntBlock>
     private static final int DISTANCE_NEAR = 10;
 
     /*
-     * (non-Javadoc)
-     * 
-     * @see
-     * com.nitnelave.CreeperHeal.utils.NeighborFinder#getNeighbor(org.bukkit
-     * .Location, java.util.LinkedList)
+     * The burnt blocks older than this date are removed when cleaning.
      */
-    @Override
-    protected CreeperBurntBlock getNeighbor(Location loc, LinkedList<CreeperBurntBlock> list)
-    {
-        if (list != null)
-        {
-            World w = loc.getWorld();
-            for (CreeperBurntBlock cB : list)
-                if (cB.getWorld() == w && loc.distance(cB.getLocation()) < DISTANCE_NEAR)
-                    return cB;
-        }
-        return null;
-    }
+    private long delay;
 
     /*
      * (non-Javadoc)
@@ -52,37 +30,21 @@ public class NeighborFire extends NeighborFinder<CreeperBurntBlock>
     @Override
     public void clean()
     {
-        Iterator<LinkedList<CreeperBurntBlock>> iter = map.values().iterator();
-        Date delay = new Date(new Date().getTime() - 1000
-                              * CreeperConfig.getInt(CfgVal.WAIT_BEFORE_HEAL_BURNT) + 4000000
-                              * CreeperConfig.getInt(CfgVal.BLOCK_PER_BLOCK_INTERVAL));
-        while (iter.hasNext())
-        {
-            LinkedList<CreeperBurntBlock> list = iter.next();
-            Iterator<CreeperBurntBlock> it = list.iterator();
-            while (it.hasNext())
-            {
-                Date date = it.next().getTime();
-                if (date.before(delay))
-                    it.remove();
-                else
-                    break;
-            }
-            if (list.isEmpty())
-                iter.remove();
-        }
+        delay = CreeperClock.now() - 1000L * CreeperConfig.getInt(CfgVal.WAIT_BEFORE_HEAL_BURNT) + 4000000L
+                * CreeperConfig.getInt(CfgVal.BLOCK_PER_BLOCK_INTERVAL);
+        super.clean();
     }
 
-    /**
-     * Removes a block from the index.
+    /*
+     * (non-Javadoc)
      * 
-     * @param block
-     *            The block to be removed.
+     * @see
+     * com.nitnelave.CreeperHeal.utils.NeighborFinder#isObsolete(java.lang.Object)
      */
-    public void removeElement(CreeperBurntBlock block)
+    @Override
+    protected boolean isObsolete(CreeperBurntBlock block)
     {
-        Location l = block.getLocation();
-        removeElement(block, l.getBlockX(), l.getBlockZ());
+        return block.getTime() < delay;
     }
 
     /**
@@ -93,8 +55,7 @@ public class NeighborFire extends NeighborFinder<CreeperBurntBlock>
      */
     public void addElement(CreeperBurntBlock block)
     {
-        Location l = block.getLocation();
-        addElement(block, l.getBlockX(), l.getBlockZ());
+        addElement(block, block.getLocation(), DISTANCE_NEAR);
     }
 
 }
@@ -0,0 +1,83 @@
+package com.nitnelave.CreeperHeal.utils;
+
+import org.bukkit.block.Block;
+
+/**
+ * Pack block coordinates into a single long, to store positions without
+ * keeping a Location or a BlockState around. x and z use 26 bits each, which
+ * covers the whole world border, and y uses the remaining 12 bits.
+ *
+ * @author nitnelave
+ *
+ */
+public abstract class PackedLocation
+{
+
+    private final static long XZ_MASK = (1L << 26) - 1;
+    private final static long Y_MASK = (1L << 12) - 1;
+
+    /**
+     * Pack block coordinates.
+     *
+     * @param x
+     *            The x coordinate.
+     * @param y
+     *            The y coordinate.
+     * @param z
+     *            The z coordinate.
+     * @return The packed position.
+     */
+    public static long pack(int x, int y, int z)
+    {
+        return (x & XZ_MASK) << 38 | (z & XZ_MASK) << 12 | y & Y_MASK;
+    }
+
+    /**
+     * Pack a block's coordinates.
+     *
+     * @param block
+     *            The block.
+     * @return The packed position.
+     */
+    public static long pack(Block block)
+    {
+        return pack(block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * Get the x coordinate of a packed position.
+     *
+     * @param packed
+     *            The packed position.
+     * @return The x coordinate.
+     */
+    public static int getX(long packed)
+    {
+        return (int) (packed >> 38);
+    }
+
+    /**
+     * Get the y coordinate of a packed position.
+     *
+     * @param packed
+     *            The packed position.
+     * @return The y coordinate.
+     */
+    public static int getY(long packed)
+    {
+        return (int) (packed & Y_MASK);
+    }
+
+    /**
+     * Get the z coordinate of a packed position.
+     *
+     * @param packed
+     *            The packed position.
+     * @return The z coordinate.
+     */
+    public static int getZ(long packed)
+    {
+        return (int) (packed << 26 >> 38);
+    }
+
+}
@@ -0,0 +1,301 @@
+package com.nitnelave.CreeperHeal.block;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import com.nitnelave.CreeperHeal.events.CHExplosionRecordEvent.ExplosionReason;
+import com.nitnelave.CreeperHeal.headless.HeadlessServer;
+import com.nitnelave.CreeperHeal.headless.MemoryWorld;
+import com.nitnelave.CreeperHeal.utils.CreeperLog;
+import com.nitnelave.CreeperHeal.utils.CreeperStats;
+import com.nitnelave.CreeperHeal.utils.PackedLocation;
+
+/**
+ * Replay of a trace recorded with /ch trace, in a memory world of the
+ * headless server. The records are fed to the managers at a multiple of the
+ * recorded speed, and the report gives the throughput, the cost of feeding
+ * the ticks and the peak number of blocks waiting once every block has been
+ * replaced.
+ *
+ * @see com.nitnelave.CreeperHeal.block.HealTrace
+ * @author nitnelave
+ *
+ */
+public abstract class HealReplay
+{
+
+    /*
+     * The time after which the replay gives up waiting for the heals, once
+     * every record is fed, in ticks.
+     */
+    private static final int DRAIN_TIMEOUT = 20 * 60 * 10;
+
+    private static int worlds = 0;
+
+    /**
+     * Replay a trace in a new memory world, and print the report.
+     *
+     * @param args
+     *            The trace file, then the speed of the replay (1 by
+     *            default).
+     * @throws IOException
+     *             If the trace cannot be read.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0)
+        {
+            System.err.println("HealReplay [trace file] (speed)");
+            System.exit(1);
+        }
+        int speed = args.length > 1 ? Math.max(1, Integer.parseInt(args[1])) : 1;
+        MemoryWorld memory = HeadlessServer.get().createWorld("replay-" + ++worlds);
+        for (String line : run(new File(args[0]), memory, speed))
+            System.out.println(line);
+    }
+
+    /**
+     * Replay a trace in a memory world, driving the ticks of the headless
+     * server until every record is fed and every block replaced. The records
+     * of all the worlds of the trace are replayed in the same world.
+     *
+     * @param file
+     *            The trace to replay.
+     * @param memory
+     *            The world to replay the trace in.
+     * @param speed
+     *            The number of recorded ticks replayed in a tick.
+     * @return The lines of the report.
+     * @throws IOException
+     *             If the trace cannot be read.
+     */
+    public static List<String> run(File file, MemoryWorld memory, int speed) throws IOException
+    {
+        return new Replay(read(file), memory.as(World.class), speed).run(HeadlessServer.get());
+    }
+
+    /*
+     * Read all the records of a trace.
+     */
+    private static List<Record> read(File file) throws IOException
+    {
+        List<Record> records = new ArrayList<Record>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+        try
+        {
+            if (in.readInt() != HealTrace.MAGIC)
+                throw new IOException("not a trace file");
+            while (true)
+            {
+                byte type;
+                try
+                {
+                    type = in.readByte();
+                } catch (EOFException e)
+                {
+                    break;
+                }
+                if (type == HealTrace.WORLD)
+                {
+                    in.readUTF();
+                    continue;
+                }
+                Record r = new Record(type, in.readInt());
+                in.readShort();
+                switch (type)
+                {
+                case HealTrace.EXPLOSION:
+                    r.x = in.readDouble();
+                    r.y = in.readDouble();
+                    r.z = in.readDouble();
+                    r.reason = ExplosionReason.values()[in.readByte()];
+                    r.count = in.readInt();
+                    r.readBlocks(in, r.count);
+                    break;
+                case HealTrace.BURN:
+                    r.count = 1;
+                    r.readBlocks(in, 1);
+                    break;
+                case HealTrace.HANGING:
+                    in.readLong();
+                    in.readBoolean();
+                    in.readByte();
+                    in.readBoolean();
+                    break;
+                default:
+                    throw new IOException("unknown record " + type);
+                }
+                records.add(r);
+            }
+        } catch (EOFException e)
+        {
+            CreeperLog.warning("[Trace] The trace was truncated, replaying the complete records");
+        } finally
+        {
+            in.close();
+        }
+        return records;
+    }
+
+    /*
+     * A record of the trace: the blocks destroyed come first, then the blocks
+     * around them.
+     */
+    private static class Record
+    {
+        private final byte type;
+        private final int tick;
+        private double x, y, z;
+        private ExplosionReason reason;
+        private int count = 0;
+        private long[] positions;
+        private char[] ids;
+        private byte[] data;
+
+        private Record(byte type, int tick)
+        {
+            this.type = type;
+            this.tick = tick;
+        }
+
+        /*
+         * Read the destroyed blocks, then the blocks around.
+         */
+        private void readBlocks(DataInputStream in, int n) throws IOException
+        {
+            long[] p = new long[n];
+            char[] t = new char[n];
+            byte[] d = new byte[n];
+            for (int i = 0; i < n; i++)
+            {
+                p[i] = in.readLong();
+                t[i] = in.readChar();
+                d[i] = in.readByte();
+            }
+            int around = in.readInt();
+            positions = new long[n + around];
+            ids = new char[n + around];
+            data = new byte[n + around];
+            System.arraycopy(p, 0, positions, around, n);
+            System.arraycopy(t, 0, ids, around, n);
+            System.arraycopy(d, 0, data, around, n);
+            for (int i = 0; i < around; i++)
+            {
+                positions[i] = in.readLong();
+                ids[i] = in.readChar();
+                data[i] = in.readByte();
+            }
+        }
+
+        /*
+         * Get the block at the index in the world.
+         */
+        private Block getBlock(World world, int i)
+        {
+            long p = positions[i];
+            return world.getBlockAt(PackedLocation.getX(p), PackedLocation.getY(p), PackedLocation.getZ(p));
+        }
+    }
+
+    /*
+     * A trace being replayed.
+     */
+    private static class Replay
+    {
+        private final List<Record> records;
+        private final World world;
+        private final int speed;
+        private final CreeperStats.Timer feed = new CreeperStats.Timer();
+        private int index = 0, ticks = 0;
+        private int explosions = 0, burnt = 0, hangings = 0, peak = 0;
+
+        private Replay(List<Record> records, World world, int speed)
+        {
+            this.records = records;
+            this.world = world;
+            this.speed = speed;
+        }
+
+        /*
+         * Feed the records at their tick, then wait for the blocks to be
+         * replaced, and report.
+         */
+        private List<String> run(HeadlessServer server)
+        {
+            long recorded = CreeperStats.RECORDED.sum(), replaced = CreeperStats.REPLACED.sum();
+            long start = System.nanoTime();
+            int drained = 0;
+            while (index < records.size() || server.countPending() > 0
+                   || !ExplodedBlockManager.isExplosionListEmpty())
+            {
+                ticks++;
+                long begin = System.nanoTime();
+                while (index < records.size() && records.get(index).tick <= (long) ticks * speed)
+                    apply(records.get(index++));
+                feed.record(System.nanoTime() - begin);
+                server.tick();
+
+                if (ticks % 20 == 0)
+                    peak = Math.max(peak, server.countPending());
+                if (index == records.size() && ++drained > DRAIN_TIMEOUT)
+                    throw new IllegalStateException("Some blocks were still waiting after " + DRAIN_TIMEOUT / 1200
+                                                    + " minutes");
+            }
+
+            long ms = Math.max(1, (System.nanoTime() - start) / 1000000);
+            long done = CreeperStats.REPLACED.sum() - replaced;
+            List<String> report = new ArrayList<String>();
+            report.add("Replayed " + explosions + " explosions and " + burnt + " burnt blocks in " + ticks
+                       + " ticks at " + speed + "x, " + hangings + " hangings skipped");
+            report.add("Blocks recorded: " + (CreeperStats.RECORDED.sum() - recorded) + ", replaced: " + done
+                       + ", " + done * 1000 / ms + " blocks/s");
+            report.add("Peak blocks waiting: " + peak);
+            report.add("Feeding ticks: " + feed);
+            return report;
+        }
+
+        /*
+         * Rebuild the blocks of the record in the world, and feed it to the
+         * managers.
+         */
+        private void apply(Record r)
+        {
+            switch (r.type)
+            {
+            case HealTrace.EXPLOSION:
+                explosions++;
+                int around = r.positions.length - r.count;
+                List<Block> blocks = new ArrayList<Block>(r.count);
+                for (int i = 0; i < r.positions.length; i++)
+                {
+                    Block b = r.getBlock(world, i);
+                    b.setTypeIdAndData(r.ids[i], r.data[i], false);
+                    if (i >= around)
+                        blocks.add(b);
+                }
+                ExplodedBlockManager.processExplosion(blocks, new Location(world, r.x, r.y, r.z), r.reason);
+                break;
+            case HealTrace.BURN:
+                burnt++;
+                for (int i = 0; i < r.positions.length; i++)
+                    r.getBlock(world, i).setTypeIdAndData(r.ids[i], r.data[i], false);
+                BurntBlockManager.recordBurntBlock(r.getBlock(world, r.positions.length - 1));
+                break;
+            default:
+                hangings++;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.nitnelave.CreeperHeal.block;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.nitnelave.CreeperHeal.config.CfgVal;
+import com.nitnelave.CreeperHeal.config.CreeperConfig;
+import com.nitnelave.CreeperHeal.headless.HeadlessServer;
+import com.nitnelave.CreeperHeal.utils.CreeperClock;
+import com.nitnelave.CreeperHeal.utils.DamagedChunks;
+
+/**
+ * Long-running test of the plugin, on the headless server: a workload is
+ * generated in a memory world with the clock sped up, so that days of
+ * explosions and heals happen in minutes. Once every block has been replaced
+ * and the indexes have expired their entries, the sizes of all the lists and
+ * indexes are compared to their sizes before the test, and any that grew is
+ * reported as a leak.
+ *
+ * The parameters are the ones of the workload, with speed (the number of
+ * clock ticks per server tick) and minutes (the duration of the workload, in
+ * server ticks). The rate of explosions stays constant. Run it with
+ * key=value arguments, or through SoakTest.
+ *
+ * @author nitnelave
+ *
+ */
+public abstract class HealSoak
+{
+
+    /*
+     * The time after which the test gives up waiting for the heals, in server
+     * ticks.
+     */
+    private static final int DRAIN_TIMEOUT = 20 * 60 * 10;
+
+    /**
+     * Run a soak test with the parameters given as key=value, and print the
+     * report.
+     *
+     * @param args
+     *            The parameters.
+     */
+    public static void main(String[] args)
+    {
+        List<String> report = new ArrayList<String>();
+        int leaks = run(HealWorkload.parse(args), report);
+        for (String line : report)
+            System.out.println(line);
+        System.exit(leaks == 0 ? 0 : 1);
+    }
+
+    /**
+     * Run a soak test in a new memory world. The clock is back to its normal
+     * speed when the test returns, even if it failed.
+     *
+     * @param params
+     *            The parameters, by name.
+     * @param report
+     *            The list the lines of the report are added to.
+     * @return The number of lists and indexes that grew, or -1 if some blocks
+     *         were never replaced.
+     * @throws NumberFormatException
+     *             If a parameter is not a number.
+     */
+    public static int run(Map<String, String> params, List<String> report)
+    {
+        Map<String, String> workload = new HashMap<String, String>(params);
+        int speed = Integer.parseInt(workload.containsKey("speed") ? workload.remove("speed") : "1200");
+        String minutes = workload.remove("minutes");
+        workload.put("seconds", String.valueOf(60 * Integer.parseInt(minutes == null ? "5" : minutes)));
+        workload.put("max-rate", workload.containsKey("rate") ? workload.get("rate") : "1");
+
+        HeadlessServer server = HeadlessServer.get();
+        Map<String, Integer> baseline = sizes();
+        long start = CreeperClock.getTicks();
+        CreeperClock.setSpeed(speed);
+        try
+        {
+            report.addAll(HealWorkload.run(workload));
+            if (server.drain(DRAIN_TIMEOUT) < 0)
+            {
+                report.add("Some blocks were still waiting after " + DRAIN_TIMEOUT / 1200 + " minutes");
+                return -1;
+            }
+            /*
+             * Let the fall and rail preventions, and the recently burnt blocks
+             * expire.
+             */
+            long settled = CreeperClock.now() + 1000L * CreeperConfig.getInt(CfgVal.WAIT_BEFORE_BURN_AGAIN)
+                           + 250L * CreeperConfig.getInt(CfgVal.BLOCK_PER_BLOCK_INTERVAL);
+            while (CreeperClock.now() <= settled)
+                server.tick();
+        } finally
+        {
+            CreeperClock.setSpeed(1);
+        }
+        return report(baseline, start, report);
+    }
+
+    /*
+     * Get the sizes of all the lists and indexes, by name.
+     */
+    private static Map<String, Integer> sizes()
+    {
+        Map<String, Integer> sizes = new TreeMap<String, Integer>();
+        ExplodedBlockManager.collectSizes(sizes);
+        BurntBlockManager.collectSizes(sizes);
+        sizes.put("delayed blocks", DelayReplacement.size());
+        sizes.put("blocks to replace", ToReplaceList.size());
+        sizes.put("fall prevention", FallIndex.size());
+        sizes.put("rail buckets", RailsIndex.size());
+        sizes.put("damaged chunks", DamagedChunks.size());
+        return sizes;
+    }
+
+    /*
+     * Clean the indexes, and compare their sizes to the baseline.
+     */
+    private static int report(Map<String, Integer> baseline, long start, List<String> report)
+    {
+        ExplodedBlockManager.cleanIndex();
+        BurntBlockManager.cleanUp();
+        FallIndex.cleanUp();
+        RailsIndex.cleanUp();
+
+        report.add("Soak test: " + (CreeperClock.getTicks() - start) / 72000 + " hours simulated");
+        int leaks = 0;
+        for (Map.Entry<String, Integer> e : sizes().entrySet())
+        {
+            Integer before = baseline.get(e.getKey());
+            int b = before == null ? 0 : before;
+            boolean leak = e.getValue() > b;
+            if (leak)
+                leaks++;
+            report.add(e.getKey() + ": " + b + " -> " + e.getValue() + (leak ? " LEAK" : ""));
+        }
+        report.add(leaks == 0 ? "Every list and index is back to its size" : leaks + " lists or indexes grew");
+        return leaks;
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.nitnelave.CreeperHeal.block;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.Chest;
+import org.bukkit.block.Sign;
+import org.bukkit.inventory.ItemStack;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.nitnelave.CreeperHeal.config.CfgVal;
+import com.nitnelave.CreeperHeal.config.CreeperConfig;
+import com.nitnelave.CreeperHeal.events.CHExplosionRecordEvent.ExplosionReason;
+import com.nitnelave.CreeperHeal.headless.HeadlessServer;
+import com.nitnelave.CreeperHeal.headless.MemoryWorld;
+
+/**
+ * Explosions and fires fed to the managers in a memory world, checking that
+ * every block comes back as it was.
+ *
+ * @author nitnelave
+ *
+ */
+public class HealTest
+{
+
+    /*
+     * Ten minutes of ticks, more than any default delay.
+     */
+    private static final int MAX_TICKS = 20 * 60 * 10;
+
+    private static int worlds = 0;
+
+    private HeadlessServer server;
+    private MemoryWorld memory;
+    private World world;
+
+    @Before
+    public void setUp()
+    {
+        server = HeadlessServer.get();
+        memory = server.createWorld("heal-" + ++worlds);
+        world = memory.as(World.class);
+    }
+
+    /*
+     * Build a stone floor with a torch, a sign and a chest on it.
+     */
+    private void buildScene()
+    {
+        for (int x = -4; x <= 4; x++)
+            for (int z = -4; z <= 4; z++)
+                memory.set(x, 63, z, Material.STONE.getId(), (byte) 0);
+        memory.set(1, 64, 1, Material.COBBLESTONE.getId(), (byte) 0);
+        memory.set(-1, 64, 0, Material.TORCH.getId(), (byte) 5);
+
+        memory.set(0, 64, -2, Material.SIGN_POST.getId(), (byte) 4);
+        Sign sign = (Sign) world.getBlockAt(0, 64, -2).getState();
+        sign.setLine(0, "Creeper");
+        sign.setLine(1, "Heal");
+        sign.update();
+
+        memory.set(0, 64, 2, Material.CHEST.getId(), (byte) 2);
+        ((Chest) world.getBlockAt(0, 64, 2).getState()).getInventory().setItem(4, new ItemStack(Material.DIAMOND, 3));
+    }
+
+    /*
+     * Get the blocks that are not air in a sphere.
+     */
+    private List<Block> sphere(int cx, int cy, int cz, int r)
+    {
+        List<Block> blocks = new ArrayList<Block>();
+        for (int x = -r; x <= r; x++)
+            for (int y = -r; y <= r; y++)
+                for (int z = -r; z <= r; z++)
+                    if (x * x + y * y + z * z <= r * r && memory.getId(cx + x, cy + y, cz + z) != 0)
+                        blocks.add(world.getBlockAt(cx + x, cy + y, cz + z));
+        return blocks;
+    }
+
+    @Test
+    public void explodedBlocksAreHealed()
+    {
+        buildScene();
+        Map<Long, Integer> before = memory.getBlocks();
+
+        List<Block> blocks = sphere(0, 64, 0, 3);
+        ExplodedBlockManager.processExplosion(blocks, new Location(world, 0.5, 64.5, 0.5), ExplosionReason.OTHER);
+        for (Block b : blocks)
+            assertEquals(Material.AIR, b.getType());
+
+        assertTrue("the blocks were not replaced", server.drain(MAX_TICKS) >= 0);
+        assertEquals(before, memory.getBlocks());
+        assertEquals("Creeper", ((Sign) world.getBlockAt(0, 64, -2).getState()).getLine(0));
+        assertEquals("Heal", ((Sign) world.getBlockAt(0, 64, -2).getState()).getLine(1));
+        ItemStack item = ((Chest) world.getBlockAt(0, 64, 2).getState()).getInventory().getItem(4);
+        assertEquals(Material.DIAMOND, item.getType());
+        assertEquals(3, item.getAmount());
+    }
+
+    @Test
+    public void overlappingExplosionsAreHealed()
+    {
+        buildScene();
+        Map<Long, Integer> before = memory.getBlocks();
+
+        ExplodedBlockManager.processExplosion(sphere(-2, 63, 0, 2), new Location(world, -1.5, 63.5, 0.5),
+                                              ExplosionReason.OTHER);
+        server.tick();
+        ExplodedBlockManager.processExplosion(sphere(1, 63, 1, 3), new Location(world, 1.5, 63.5, 1.5),
+                                              ExplosionReason.OTHER);
+
+        assertTrue("the blocks were not replaced", server.drain(MAX_TICKS) >= 0);
+        assertEquals(before, memory.getBlocks());
+    }
+
+    @Test
+    public void explosionIsIndexedWithItsRadius()
+    {
+        for (int x = -6; x <= 6; x++)
+            for (int z = -6; z <= 6; z++)
+                memory.set(x, 63, z, Material.STONE.getId(), (byte) 0);
+        Map<Long, Integer> before = memory.getBlocks();
+
+        ExplodedBlockManager.processExplosion(sphere(0, 63, 0, 5), new Location(world, 0.5, 63.5, 0.5),
+                                              ExplosionReason.OTHER);
+        assertTrue(ExplodedBlockManager.isNextToExplosion(new Location(world, 4.5, 63.5, 0.5)));
+
+        assertTrue("the blocks were not replaced", server.drain(MAX_TICKS) >= 0);
+        assertEquals(before, memory.getBlocks());
+    }
+
+    @Test
+    public void obsidianIsRemovedWhenRecorded()
+    {
+        for (int x = -6; x <= 6; x++)
+            for (int z = -6; z <= 6; z++)
+                memory.set(x, 63, z, Material.STONE.getId(), (byte) 0);
+        memory.set(3, 64, 0, Material.OBSIDIAN.getId(), (byte) 0);
+        Map<Long, Integer> before = memory.getBlocks();
+
+        int chance = CreeperConfig.getInt(CfgVal.OBSIDIAN_CHANCE);
+        boolean obsidian = CreeperConfig.getBool(CfgVal.EXPLODE_OBSIDIAN);
+        CreeperConfig.setInt(CfgVal.OBSIDIAN_CHANCE, 100);
+        CreeperConfig.setBool(CfgVal.EXPLODE_OBSIDIAN, true);
+        try
+        {
+            ExplodedBlockManager.processExplosion(sphere(0, 63, 0, 2), new Location(world, 0.5, 63.5, 0.5),
+                                                  ExplosionReason.OTHER);
+            assertEquals(0, memory.getId(3, 64, 0));
+        } finally
+        {
+            CreeperConfig.setInt(CfgVal.OBSIDIAN_CHANCE, chance);
+            CreeperConfig.setBool(CfgVal.EXPLODE_OBSIDIAN, obsidian);
+        }
+
+        assertTrue("the blocks were not replaced", server.drain(MAX_TICKS) >= 0);
+        assertEquals(before, memory.getBlocks());
+    }
+
+    @Test
+    public void burntBlocksAreHealed()
+    {
+        for (int x = 0; x < 4; x++)
+            memory.set(x, 64, 0, Material.WOOD.getId(), (byte) 1);
+        Map<Long, Integer> before = memory.getBlocks();
+
+        for (int x = 0; x < 4; x++)
+            BurntBlockManager.recordBurntBlock(world.getBlockAt(x, 64, 0));
+        assertEquals(0, memory.getBlocks().size());
+
+        assertTrue("the blocks were not replaced", server.drain(MAX_TICKS) >= 0);
+        assertEquals(before, memory.getBlocks());
+    }
+
+}
@@ -0,0 +1,314 @@
+package com.nitnelave.CreeperHeal.block;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Painting;
+
+import com.nitnelave.CreeperHeal.events.CHExplosionRecordEvent.ExplosionReason;
+import com.nitnelave.CreeperHeal.headless.HeadlessServer;
+import com.nitnelave.CreeperHeal.utils.CreeperStats;
+
+/**
+ * Generator of synthetic explosions and fires, to find the load the plugin
+ * can handle. The explosions are spheres of blocks built in a memory world of
+ * the headless server, with a configurable mix of block types, and fed to the
+ * managers like real ones. The rate of explosions doubles at every step, and
+ * the cost of every step is reported in a table, to find the rate at which
+ * the plugin exceeds the budget of a tick.
+ *
+ * The parameters, given as key=value, are:
+ * <ul>
+ * <li>rate, max-rate: the explosions per second of the first and last steps.
+ * <li>seconds: the duration of a step.
+ * <li>radius-min, radius-max: the radius of the explosions, uniformly
+ * distributed.
+ * <li>join: the probability that an explosion happens next to the previous
+ * one.
+ * <li>fire: the burnt blocks per second.
+ * <li>chest, rail, door, torch, painting, sand: the share of these blocks in
+ * the explosions, the rest being stone.
+ * <li>range: the distance around the spawn in which the explosions happen.
+ * <li>seed: the seed of the generator, so that runs can be compared.
+ * </ul>
+ *
+ * @author nitnelave
+ *
+ */
+public abstract class HealWorkload
+{
+
+    /*
+     * The duration of a tick, in ns.
+     */
+    private static final long TICK_BUDGET = 50000000L;
+
+    private static int worlds = 0;
+
+    /**
+     * Generate a workload with the parameters given as key=value, and print
+     * the table.
+     *
+     * @param args
+     *            The parameters.
+     */
+    public static void main(String[] args)
+    {
+        for (String line : run(parse(args)))
+            System.out.println(line);
+    }
+
+    /**
+     * Parse parameters given as key=value.
+     *
+     * @param args
+     *            The parameters.
+     * @return The parameters, by name.
+     */
+    public static Map<String, String> parse(String[] args)
+    {
+        Map<String, String> params = new HashMap<String, String>();
+        for (String arg : args)
+        {
+            int eq = arg.indexOf('=');
+            if (eq > 0)
+                params.put(arg.substring(0, eq).toLowerCase(), arg.substring(eq + 1));
+        }
+        return params;
+    }
+
+    /**
+     * Generate a workload in a new memory world, driving the ticks of the
+     * headless server until the last step is measured.
+     *
+     * @param params
+     *            The parameters, by name.
+     * @return The table of the results, a line per step.
+     * @throws NumberFormatException
+     *             If a parameter is not a number.
+     */
+    public static List<String> run(Map<String, String> params)
+    {
+        HeadlessServer server = HeadlessServer.get();
+        Workload workload = new Workload(server.createWorld("workload-" + ++worlds).as(World.class), params);
+        while (workload.rate <= workload.maxRate)
+        {
+            long recording = workload.feed(), start = System.nanoTime();
+            server.tick();
+            workload.measure(recording + System.nanoTime() - start);
+        }
+        return workload.table;
+    }
+
+    /*
+     * Get a parameter, or its default value.
+     */
+    private static double get(Map<String, String> params, String key, double def)
+    {
+        String value = params.get(key);
+        return value == null ? def : Double.parseDouble(value);
+    }
+
+    /*
+     * A workload being generated.
+     */
+    private static class Workload
+    {
+        private final World world;
+        private final Random random;
+        private final int maxRate, ticksPerStep, radiusMin, radiusMax, range;
+        private final double join, fire;
+        /*
+         * The cumulated shares of chests, rails, doors, torches, paintings and
+         * sand.
+         */
+        private final double[] mix = new double[6];
+        private final List<String> table = new ArrayList<String>();
+        private int rate, tick = 0;
+        private double explosionsDue = 0, fireDue = 0;
+        private Location last = null;
+        private long recording;
+
+        /*
+         * The measures of the current step: the time spent in the plugin,
+         * recording the blocks and running the tasks of the tick.
+         */
+        private long tickTotal, tickMax, blocksStart;
+        private int over;
+
+        private Workload(World world, Map<String, String> params)
+        {
+            this.world = world;
+            random = new Random((long) get(params, "seed", 0));
+            rate = Math.max(1, (int) get(params, "rate", 1));
+            maxRate = (int) get(params, "max-rate", 64);
+            ticksPerStep = 20 * Math.max(1, (int) get(params, "seconds", 10));
+            radiusMin = Math.max(1, (int) get(params, "radius-min", 2));
+            radiusMax = Math.max(radiusMin, (int) get(params, "radius-max", 5));
+            range = Math.max(16, (int) get(params, "range", 256));
+            join = get(params, "join", 0.2);
+            fire = get(params, "fire", 0);
+            String[] types = {"chest", "rail", "door", "torch", "painting", "sand"};
+            double[] defaults = {0.02, 0.02, 0.02, 0.05, 0.01, 0.1};
+            double sum = 0;
+            for (int i = 0; i < types.length; i++)
+            {
+                sum += get(params, types[i], defaults[i]);
+                mix[i] = sum;
+            }
+            table.add("rate/s | blocks/s | plugin ms/tick | plugin ms max | ticks over budget");
+            startStep();
+        }
+
+        /*
+         * Reset the measures for a new step.
+         */
+        private void startStep()
+        {
+            blocksStart = CreeperStats.RECORDED.sum();
+            tickTotal = tickMax = 0;
+            over = 0;
+        }
+
+        /*
+         * Feed the explosions and burnt blocks due in this tick to the
+         * managers, and get the time spent recording them. The time spent
+         * building the blocks is not counted.
+         */
+        private long feed()
+        {
+            recording = 0;
+            explosionsDue += rate / 20d;
+            for (; explosionsDue >= 1; explosionsDue--)
+                explode();
+            fireDue += fire / 20d;
+            for (; fireDue >= 1; fireDue--)
+                burn();
+            return recording;
+        }
+
+        /*
+         * Add the time of a tick to the step, and end the step after its last
+         * tick.
+         */
+        private void measure(long duration)
+        {
+            tick++;
+            tickTotal += duration;
+            tickMax = Math.max(tickMax, duration);
+            if (duration > TICK_BUDGET)
+                over++;
+            if (tick % ticksPerStep == 0)
+                endStep();
+        }
+
+        /*
+         * Add the row of the step to the table, and go to the next step.
+         */
+        private void endStep()
+        {
+            double ticks = ticksPerStep;
+            table.add(String.format("%6d | %8d | %14.2f | %13.2f | %d", rate,
+                                    (CreeperStats.RECORDED.sum() - blocksStart) * 20 / ticksPerStep,
+                                    tickTotal / ticks / 1e6, tickMax / 1e6, over));
+            rate *= 2;
+            startStep();
+        }
+
+        /*
+         * Get a random position in the range around the spawn.
+         */
+        private Location randomLocation()
+        {
+            Location spawn = world.getSpawnLocation();
+            return new Location(world, spawn.getBlockX() + random.nextInt(2 * range) - range,
+                                Math.min(world.getMaxHeight() - radiusMax - 2, Math.max(radiusMax + 1, spawn.getBlockY())),
+                                spawn.getBlockZ() + random.nextInt(2 * range) - range);
+        }
+
+        /*
+         * Build a sphere of blocks, and feed it to the manager as an
+         * explosion.
+         */
+        private void explode()
+        {
+            int r = radiusMin + random.nextInt(radiusMax - radiusMin + 1);
+            Location center;
+            if (last != null && random.nextDouble() < join)
+                center = last.clone().add(random.nextInt(2 * r + 1) - r, 0, random.nextInt(2 * r + 1) - r);
+            else
+                center = randomLocation();
+            last = center;
+
+            List<Block> blocks = new ArrayList<Block>();
+            List<Block> paintings = new ArrayList<Block>();
+            int cx = center.getBlockX(), cy = center.getBlockY(), cz = center.getBlockZ();
+            for (int dx = -r; dx <= r; dx++)
+                for (int dz = -r; dz <= r; dz++)
+                    for (int dy = -r; dy <= r; dy++)
+                    {
+                        if (dx * dx + dy * dy + dz * dz > r * r)
+                            continue;
+                        Block b = world.getBlockAt(cx + dx, cy + dy, cz + dz);
+                        double pick = random.nextDouble();
+                        if (pick < mix[0])
+                            b.setTypeIdAndData(Material.CHEST.getId(), (byte) 2, false);
+                        else if (pick < mix[1])
+                            b.setTypeIdAndData(Material.RAILS.getId(), (byte) 0, false);
+                        else if (pick < mix[2] && dx * dx + (dy + 1) * (dy + 1) + dz * dz <= r * r)
+                        {
+                            b.setTypeIdAndData(Material.WOODEN_DOOR.getId(), (byte) 0, false);
+                            blocks.add(b);
+                            b = b.getRelative(0, 1, 0);
+                            b.setTypeIdAndData(Material.WOODEN_DOOR.getId(), (byte) 8, false);
+                            dy++;
+                        }
+                        else if (pick < mix[3])
+                            b.setTypeIdAndData(Material.TORCH.getId(), (byte) 5, false);
+                        else if (pick < mix[4])
+                        {
+                            b.setTypeIdAndData(0, (byte) 0, false);
+                            paintings.add(b);
+                            continue;
+                        }
+                        else if (pick < mix[5])
+                            b.setTypeIdAndData(Material.SAND.getId(), (byte) 0, false);
+                        else
+                            b.setTypeIdAndData(Material.STONE.getId(), (byte) 0, false);
+                        blocks.add(b);
+                    }
+
+            for (Block b : paintings)
+                try
+                {
+                    ExplodedBlockManager.recordHanging(world.spawn(b.getLocation(), Painting.class));
+                } catch (IllegalArgumentException e)
+                {
+                    //no wall to hang the painting on.
+                }
+            long start = System.nanoTime();
+            ExplodedBlockManager.processExplosion(blocks, center.add(0.5, 0.5, 0.5), ExplosionReason.OTHER);
+            recording += System.nanoTime() - start;
+        }
+
+        /*
+         * Place a block of wood, and record it as burnt.
+         */
+        private void burn()
+        {
+            Block b = randomLocation().getBlock();
+            b.setTypeIdAndData(Material.WOOD.getId(), (byte) 0, false);
+            long start = System.nanoTime();
+            BurntBlockManager.recordBurntBlock(b);
+            recording += System.nanoTime() - start;
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.nitnelave.CreeperHeal.block;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.nitnelave.CreeperHeal.utils.CreeperClock;
+
+/**
+ * A short soak test: twenty simulated hours of explosions and fires must
+ * leave every list and index back to its size, and the clock back to its
+ * speed.
+ *
+ * @author nitnelave
+ *
+ */
+public class SoakTest
+{
+
+    @Test
+    public void listsAndIndexesDoNotLeak()
+    {
+        Map<String, String> params = new HashMap<String, String>();
+        params.put("minutes", "1");
+        params.put("rate", "2");
+        params.put("fire", "2");
+        List<String> report = new ArrayList<String>();
+
+        assertEquals(report.toString(), 0, HealSoak.run(params, report));
+        assertEquals(1, CreeperClock.getSpeed());
+    }
+
+}
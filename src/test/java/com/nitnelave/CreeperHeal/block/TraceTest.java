@@ -0,0 +1,77 @@
+package com.nitnelave.CreeperHeal.block;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.junit.Test;
+
+import com.nitnelave.CreeperHeal.events.CHExplosionRecordEvent.ExplosionReason;
+import com.nitnelave.CreeperHeal.headless.HeadlessServer;
+import com.nitnelave.CreeperHeal.headless.MemoryWorld;
+
+/**
+ * A trace recorded in a memory world, replayed in another one.
+ *
+ * @author nitnelave
+ *
+ */
+public class TraceTest
+{
+
+    /*
+     * Ten minutes of ticks, more than any default delay.
+     */
+    private static final int MAX_TICKS = 20 * 60 * 10;
+
+    @Test
+    public void replayRebuildsTheRecordedBlocks() throws IOException
+    {
+        HeadlessServer server = HeadlessServer.get();
+        MemoryWorld original = server.createWorld("trace-original");
+        World world = original.as(World.class);
+        for (int x = -3; x <= 3; x++)
+            for (int z = -3; z <= 3; z++)
+                original.set(x, 63, z, Material.STONE.getId(), (byte) 0);
+        original.set(0, 64, 0, Material.TORCH.getId(), (byte) 5);
+        original.set(1, 64, 0, Material.SAND.getId(), (byte) 0);
+        original.set(4, 63, 0, Material.WOOD.getId(), (byte) 0);
+
+        File file = new File(server.getDataFolder(), "trace-test.dat");
+        HealTrace.start(file);
+        List<Block> blocks = new ArrayList<Block>();
+        for (int x = -1; x <= 1; x++)
+            for (int y = 63; y <= 64; y++)
+                for (int z = -1; z <= 1; z++)
+                    if (original.getId(x, y, z) != 0)
+                        blocks.add(world.getBlockAt(x, y, z));
+        Location loc = new Location(world, 0.5, 64.5, 0.5);
+        HealTrace.recordExplosion(blocks, loc, ExplosionReason.OTHER);
+        ExplodedBlockManager.processExplosion(blocks, loc, ExplosionReason.OTHER);
+        server.tick();
+        HealTrace.recordBurn(world.getBlockAt(4, 63, 0));
+        BurntBlockManager.recordBurntBlock(world.getBlockAt(4, 63, 0));
+        assertTrue(server.drain(MAX_TICKS) >= 0);
+        HealTrace.stop();
+
+        MemoryWorld replay = server.createWorld("trace-replay");
+        List<String> report = HealReplay.run(file, replay, 1);
+        assertTrue(report.get(0), report.get(0).startsWith("Replayed 1 explosions and 1 burnt blocks"));
+
+        Map<Long, Integer> expected = original.getBlocks(), rebuilt = replay.getBlocks();
+        assertFalse(rebuilt.isEmpty());
+        for (Map.Entry<Long, Integer> e : rebuilt.entrySet())
+            assertEquals(expected.get(e.getKey()), e.getValue());
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.nitnelave.CreeperHeal.headless;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+
+/**
+ * A plugin manager without any plugin. The events called are dispatched to the
+ * registered handlers, by priority, in the calling thread. An exception thrown
+ * by a handler is thrown back to the caller.
+ *
+ * @author nitnelave
+ *
+ */
+public class HeadlessPluginManager extends Stub
+{
+
+    /*
+     * A handler of an event class.
+     */
+    private static class Handler
+    {
+        private final Class<? extends Event> type;
+        private final Listener listener;
+        private final EventPriority priority;
+        private final EventExecutor executor;
+        private final boolean ignoreCancelled;
+
+        private Handler(Class<? extends Event> type, Listener listener, EventPriority priority,
+                        EventExecutor executor, boolean ignoreCancelled)
+        {
+            this.type = type;
+            this.listener = listener;
+            this.priority = priority;
+            this.executor = executor;
+            this.ignoreCancelled = ignoreCancelled;
+        }
+    }
+
+    private final List<Handler> handlers = new ArrayList<Handler>();
+
+    HeadlessPluginManager()
+    {
+        super(PluginManager.class);
+    }
+
+    /**
+     * Remove every registered handler.
+     */
+    public void clearHandlers()
+    {
+        handlers.clear();
+    }
+
+    /*
+     * Below are the methods of PluginManager.
+     */
+
+    public Plugin getPlugin(String name)
+    {
+        return null;
+    }
+
+    public Plugin[] getPlugins()
+    {
+        return new Plugin[0];
+    }
+
+    public boolean isPluginEnabled(String name)
+    {
+        return false;
+    }
+
+    public boolean isPluginEnabled(Plugin plugin)
+    {
+        return false;
+    }
+
+    public void registerEvent(Class<? extends Event> event, Listener listener, EventPriority priority,
+                              EventExecutor executor, Plugin plugin)
+    {
+        registerEvent(event, listener, priority, executor, plugin, false);
+    }
+
+    public void registerEvent(Class<? extends Event> event, Listener listener, EventPriority priority,
+                              EventExecutor executor, Plugin plugin, boolean ignoreCancelled)
+    {
+        Handler handler = new Handler(event, listener, priority, executor, ignoreCancelled);
+        int i = handlers.size();
+        while (i > 0 && handlers.get(i - 1).priority.getSlot() > priority.getSlot())
+            i--;
+        handlers.add(i, handler);
+    }
+
+    public void registerEvents(Listener listener, Plugin plugin)
+    {
+        for (final Method method : listener.getClass().getMethods())
+        {
+            EventHandler annotation = method.getAnnotation(EventHandler.class);
+            Class<?>[] params = method.getParameterTypes();
+            if (annotation == null || params.length != 1 || !Event.class.isAssignableFrom(params[0]))
+                continue;
+            registerEvent(params[0].asSubclass(Event.class), listener, annotation.priority(), new EventExecutor()
+            {
+                @Override
+                public void execute(Listener l, Event event) throws EventException
+                {
+                    try
+                    {
+                        method.invoke(l, event);
+                    } catch (InvocationTargetException e)
+                    {
+                        throw new EventException(e.getCause());
+                    } catch (IllegalAccessException e)
+                    {
+                        throw new EventException(e);
+                    }
+                }
+            }, plugin, annotation.ignoreCancelled());
+        }
+    }
+
+    public void callEvent(Event event)
+    {
+        for (Handler h : new ArrayList<Handler>(handlers))
+        {
+            if (!h.type.isInstance(event))
+                continue;
+            if (h.ignoreCancelled && event instanceof Cancellable && ((Cancellable) event).isCancelled())
+                continue;
+            try
+            {
+                h.executor.execute(h.listener, event);
+            } catch (EventException e)
+            {
+                /*
+                 * The server would only log it, but a test must fail.
+                 */
+                throw new IllegalStateException("Could not pass " + event.getEventName(), e.getCause());
+            }
+        }
+    }
+
+}
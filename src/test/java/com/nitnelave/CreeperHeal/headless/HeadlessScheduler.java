@@ -0,0 +1,233 @@
+package com.nitnelave.CreeperHeal.headless;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * A scheduler driven by hand, one tick at a time. The tasks due at a tick run
+ * in the order they were scheduled in. The asynchronous tasks are run like
+ * the others, in the thread calling tick, so that a run is deterministic.
+ *
+ * @author nitnelave
+ *
+ */
+public class HeadlessScheduler extends Stub
+{
+
+    /*
+     * A scheduled task.
+     */
+    private class Task extends Stub implements Comparable<Task>
+    {
+        private final int id;
+        private final Runnable runnable;
+        private final long period;
+        private final boolean sync;
+        private long due;
+        private boolean cancelled = false;
+
+        private Task(Runnable runnable, long delay, long period, boolean sync)
+        {
+            super(BukkitTask.class);
+            id = ++lastId;
+            this.runnable = runnable;
+            this.period = period;
+            this.sync = sync;
+            due = ticks + Math.max(1, delay);
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.lang.Comparable#compareTo(java.lang.Object)
+         */
+        @Override
+        public int compareTo(Task o)
+        {
+            if (due != o.due)
+                return due < o.due ? -1 : 1;
+            return id - o.id;
+        }
+
+        public int getTaskId()
+        {
+            return id;
+        }
+
+        public Plugin getOwner()
+        {
+            return null;
+        }
+
+        public boolean isSync()
+        {
+            return sync;
+        }
+
+        public void cancel()
+        {
+            cancelTask(id);
+        }
+    }
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<Task>();
+    private final Map<Integer, Task> tasks = new HashMap<Integer, Task>();
+    private long ticks = 0;
+    private int lastId = 0;
+
+    HeadlessScheduler()
+    {
+        super(BukkitScheduler.class);
+    }
+
+    /*
+     * Queue a task.
+     */
+    private Task schedule(Runnable runnable, long delay, long period, boolean sync)
+    {
+        Task task = new Task(runnable, delay, period, sync);
+        tasks.put(task.id, task);
+        queue.add(task);
+        return task;
+    }
+
+    /**
+     * Run the tasks of the next tick.
+     */
+    public void tick()
+    {
+        ticks++;
+        List<Task> done = new ArrayList<Task>();
+        Task task;
+        while ((task = queue.peek()) != null && task.due <= ticks)
+        {
+            queue.poll();
+            if (task.cancelled)
+                continue;
+            task.runnable.run();
+            done.add(task);
+        }
+        for (Task t : done)
+            if (t.period > 0 && !t.cancelled)
+            {
+                t.due = ticks + t.period;
+                queue.add(t);
+            }
+            else
+                tasks.remove(t.id);
+    }
+
+    /**
+     * Run the tasks of the next ticks.
+     *
+     * @param count
+     *            The number of ticks to run.
+     */
+    public void tick(int count)
+    {
+        for (int i = 0; i < count; i++)
+            tick();
+    }
+
+    /**
+     * Get the number of ticks run so far.
+     *
+     * @return The number of ticks.
+     */
+    public long getTicks()
+    {
+        return ticks;
+    }
+
+    /**
+     * Get the number of tasks waiting to run, repeating ones included.
+     *
+     * @return The number of tasks.
+     */
+    public int getPendingCount()
+    {
+        return tasks.size();
+    }
+
+    /*
+     * Below are the methods of BukkitScheduler.
+     */
+
+    public int scheduleSyncDelayedTask(Plugin plugin, Runnable task)
+    {
+        return schedule(task, 0, 0, true).id;
+    }
+
+    public int scheduleSyncDelayedTask(Plugin plugin, Runnable task, long delay)
+    {
+        return schedule(task, delay, 0, true).id;
+    }
+
+    public int scheduleSyncRepeatingTask(Plugin plugin, Runnable task, long delay, long period)
+    {
+        return schedule(task, delay, Math.max(1, period), true).id;
+    }
+
+    public BukkitTask runTask(Plugin plugin, Runnable task)
+    {
+        return schedule(task, 0, 0, true).as(BukkitTask.class);
+    }
+
+    public BukkitTask runTaskLater(Plugin plugin, Runnable task, long delay)
+    {
+        return schedule(task, delay, 0, true).as(BukkitTask.class);
+    }
+
+    public BukkitTask runTaskTimer(Plugin plugin, Runnable task, long delay, long period)
+    {
+        return schedule(task, delay, Math.max(1, period), true).as(BukkitTask.class);
+    }
+
+    public BukkitTask runTaskAsynchronously(Plugin plugin, Runnable task)
+    {
+        return schedule(task, 0, 0, false).as(BukkitTask.class);
+    }
+
+    public BukkitTask runTaskLaterAsynchronously(Plugin plugin, Runnable task, long delay)
+    {
+        return schedule(task, delay, 0, false).as(BukkitTask.class);
+    }
+
+    public void cancelTask(int taskId)
+    {
+        Task task = tasks.remove(taskId);
+        if (task != null)
+            task.cancelled = true;
+    }
+
+    public void cancelTasks(Plugin plugin)
+    {
+        cancelAllTasks();
+    }
+
+    public void cancelAllTasks()
+    {
+        for (Task task : tasks.values())
+            task.cancelled = true;
+        tasks.clear();
+        queue.clear();
+    }
+
+    public boolean isQueued(int taskId)
+    {
+        return tasks.containsKey(taskId);
+    }
+
+    public boolean isCurrentlyRunning(int taskId)
+    {
+        return false;
+    }
+
+}
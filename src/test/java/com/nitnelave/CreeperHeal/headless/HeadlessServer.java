@@ -0,0 +1,288 @@
+package com.nitnelave.CreeperHeal.headless;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import com.nitnelave.CreeperHeal.CreeperHeal;
+import com.nitnelave.CreeperHeal.block.BurntBlockManager;
+import com.nitnelave.CreeperHeal.block.ExplodedBlockManager;
+import com.nitnelave.CreeperHeal.utils.CreeperClock;
+import com.nitnelave.CreeperHeal.utils.CreeperScheduler;
+
+/**
+ * A server held in memory, to drive the managers of the plugin without
+ * Bukkit: the worlds are memory worlds, the tasks run when the test asks for
+ * a tick, and the events are dispatched to the handlers registered by the
+ * test. There are no players and no other plugins.
+ *
+ * The plugin is never loaded: the server starts the clock and the managers
+ * like onEnable does, with the config files in a temporary folder. Since the
+ * managers are static, there is a single server per JVM, shared by the tests.
+ *
+ * @author nitnelave
+ *
+ */
+public class HeadlessServer extends Stub
+{
+
+    private static HeadlessServer instance = null;
+
+    private final File folder;
+    private final HeadlessScheduler scheduler = new HeadlessScheduler();
+    private final HeadlessPluginManager pluginManager = new HeadlessPluginManager();
+    private final Map<String, MemoryWorld> worlds = new LinkedHashMap<String, MemoryWorld>();
+    private final Logger logger = Logger.getLogger("CreeperHeal headless");
+
+    private HeadlessServer(File folder)
+    {
+        super(Server.class);
+        this.folder = folder;
+    }
+
+    /**
+     * Get the server, started the first time.
+     *
+     * @return The server.
+     */
+    public static synchronized HeadlessServer get()
+    {
+        if (instance == null)
+        {
+            instance = new HeadlessServer(createFolder());
+            instance.start();
+        }
+        return instance;
+    }
+
+    /*
+     * Create a temporary data folder.
+     */
+    private static File createFolder()
+    {
+        try
+        {
+            File folder = File.createTempFile("creeperheal", "");
+            if (!folder.delete() || !folder.mkdirs())
+                throw new IOException("could not create " + folder);
+            return folder;
+        } catch (IOException e)
+        {
+            throw new IllegalStateException("No data folder for the headless server", e);
+        }
+    }
+
+    /*
+     * Register the server, and start the plugin's clock and managers.
+     */
+    private void start()
+    {
+        CreeperHeal.setCHFolder(folder);
+        CreeperScheduler.setScheduler(scheduler.as(BukkitScheduler.class));
+        Bukkit.setServer(as(Server.class));
+        CreeperClock.init();
+        ExplodedBlockManager.init();
+        BurntBlockManager.init();
+    }
+
+    /**
+     * Get the world of this name, created empty the first time.
+     *
+     * @param name
+     *            The name of the world.
+     * @return The world.
+     */
+    public MemoryWorld createWorld(String name)
+    {
+        MemoryWorld world = worlds.get(name);
+        if (world == null)
+        {
+            world = new MemoryWorld(name);
+            worlds.put(name, world);
+        }
+        return world;
+    }
+
+    /**
+     * Get the data folder of the plugin.
+     *
+     * @return The data folder.
+     */
+    public File getDataFolder()
+    {
+        return folder;
+    }
+
+    /**
+     * Get the scheduler driving the tasks.
+     *
+     * @return The scheduler.
+     */
+    public HeadlessScheduler scheduler()
+    {
+        return scheduler;
+    }
+
+    /**
+     * Get the plugin manager dispatching the events.
+     *
+     * @return The plugin manager.
+     */
+    public HeadlessPluginManager pluginManager()
+    {
+        return pluginManager;
+    }
+
+    /**
+     * Run the tasks of the next tick.
+     */
+    public void tick()
+    {
+        scheduler.tick();
+    }
+
+    /**
+     * Run the tasks of the next ticks.
+     *
+     * @param count
+     *            The number of ticks to run.
+     */
+    public void tick(int count)
+    {
+        scheduler.tick(count);
+    }
+
+    /**
+     * Count the blocks waiting to be replaced, exploded or burnt, in every
+     * world.
+     *
+     * @return The number of blocks waiting.
+     */
+    public int countPending()
+    {
+        int pending = 0;
+        Map<String, int[]> counts = new HashMap<String, int[]>();
+        ExplodedBlockManager.countPending(counts);
+        for (int[] c : counts.values())
+            pending += c[1];
+        counts.clear();
+        BurntBlockManager.countPending(counts);
+        for (int[] c : counts.values())
+            pending += c[0];
+        return pending;
+    }
+
+    /**
+     * Run ticks until every explosion and burnt block is replaced.
+     *
+     * @param maxTicks
+     *            The number of ticks after which to give up.
+     * @return The number of ticks run, or -1 if some blocks were still
+     *         waiting after maxTicks.
+     */
+    public int drain(int maxTicks)
+    {
+        for (int i = 0; i < maxTicks; i++)
+        {
+            if (ExplodedBlockManager.isExplosionListEmpty() && countPending() == 0)
+                return i;
+            tick();
+        }
+        return -1;
+    }
+
+    /*
+     * Below are the methods of Server.
+     */
+
+    public String getName()
+    {
+        return "Headless";
+    }
+
+    public String getServerName()
+    {
+        return getName();
+    }
+
+    public String getVersion()
+    {
+        return "headless";
+    }
+
+    public String getBukkitVersion()
+    {
+        return "1.7.2-R0.3";
+    }
+
+    public Logger getLogger()
+    {
+        return logger;
+    }
+
+    public BukkitScheduler getScheduler()
+    {
+        return scheduler.as(BukkitScheduler.class);
+    }
+
+    public PluginManager getPluginManager()
+    {
+        return pluginManager.as(PluginManager.class);
+    }
+
+    public List<World> getWorlds()
+    {
+        List<World> list = new ArrayList<World>();
+        for (MemoryWorld w : worlds.values())
+            list.add(w.as(World.class));
+        return list;
+    }
+
+    public World getWorld(String name)
+    {
+        MemoryWorld world = worlds.get(name);
+        return world == null ? null : world.as(World.class);
+    }
+
+    public World getWorld(UUID uid)
+    {
+        for (MemoryWorld w : worlds.values())
+            if (w.getUID().equals(uid))
+                return w.as(World.class);
+        return null;
+    }
+
+    public Player[] getOnlinePlayers()
+    {
+        return new Player[0];
+    }
+
+    public Player getPlayer(String name)
+    {
+        return null;
+    }
+
+    public Player getPlayerExact(String name)
+    {
+        return null;
+    }
+
+    public boolean isPrimaryThread()
+    {
+        return true;
+    }
+
+}
@@ -0,0 +1,248 @@
+package com.nitnelave.CreeperHeal.headless;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * A block of a memory world. Like the server's blocks, it is only a position:
+ * reading or writing it goes to the world.
+ *
+ * @author nitnelave
+ *
+ */
+public class MemoryBlock extends Stub
+{
+
+    private final MemoryWorld world;
+    private final int x, y, z;
+
+    MemoryBlock(MemoryWorld world, int x, int y, int z)
+    {
+        super(Block.class);
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.nitnelave.CreeperHeal.headless.Stub#sameAs(com.nitnelave.CreeperHeal.headless.Stub)
+     */
+    @Override
+    protected boolean sameAs(Stub other)
+    {
+        if (!(other instanceof MemoryBlock))
+            return false;
+        MemoryBlock b = (MemoryBlock) other;
+        return b.world == world && b.x == x && b.y == y && b.z == z;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.nitnelave.CreeperHeal.headless.Stub#hash()
+     */
+    @Override
+    protected int hash()
+    {
+        return (y << 24) ^ (x << 12) ^ z;
+    }
+
+    /*
+     * Below are the methods of Block.
+     */
+
+    public World getWorld()
+    {
+        return world.as(World.class);
+    }
+
+    public int getX()
+    {
+        return x;
+    }
+
+    public int getY()
+    {
+        return y;
+    }
+
+    public int getZ()
+    {
+        return z;
+    }
+
+    public Location getLocation()
+    {
+        return new Location(getWorld(), x, y, z);
+    }
+
+    public Location getLocation(Location loc)
+    {
+        if (loc != null)
+        {
+            loc.setWorld(getWorld());
+            loc.setX(x);
+            loc.setY(y);
+            loc.setZ(z);
+            loc.setYaw(0);
+            loc.setPitch(0);
+        }
+        return loc;
+    }
+
+    public Chunk getChunk()
+    {
+        return world.getChunkAt(x >> 4, z >> 4);
+    }
+
+    public int getTypeId()
+    {
+        return world.getId(x, y, z);
+    }
+
+    public Material getType()
+    {
+        return Material.getMaterial(getTypeId());
+    }
+
+    public byte getData()
+    {
+        return world.getData(x, y, z);
+    }
+
+    public boolean setTypeIdAndData(int type, byte data, boolean applyPhysics)
+    {
+        return world.set(x, y, z, type, data);
+    }
+
+    public boolean setTypeId(int type)
+    {
+        return setTypeId(type, true);
+    }
+
+    public boolean setTypeId(int type, boolean applyPhysics)
+    {
+        return world.set(x, y, z, type, getData());
+    }
+
+    public void setType(Material type)
+    {
+        setTypeId(type.getId());
+    }
+
+    public void setData(byte data)
+    {
+        setData(data, true);
+    }
+
+    public void setData(byte data, boolean applyPhysics)
+    {
+        world.set(x, y, z, getTypeId(), data);
+    }
+
+    public Block getRelative(int modX, int modY, int modZ)
+    {
+        return world.getBlockAt(x + modX, y + modY, z + modZ);
+    }
+
+    public Block getRelative(BlockFace face)
+    {
+        return getRelative(face, 1);
+    }
+
+    public Block getRelative(BlockFace face, int distance)
+    {
+        return getRelative(face.getModX() * distance, face.getModY() * distance, face.getModZ() * distance);
+    }
+
+    public BlockFace getFace(Block block)
+    {
+        for (BlockFace face : BlockFace.values())
+            if (x + face.getModX() == block.getX() && y + face.getModY() == block.getY()
+                && z + face.getModZ() == block.getZ())
+                return face;
+        return null;
+    }
+
+    public BlockState getState()
+    {
+        return MemoryBlockState.capture(world, x, y, z);
+    }
+
+    public boolean isEmpty()
+    {
+        return getTypeId() == 0;
+    }
+
+    public boolean isLiquid()
+    {
+        int id = getTypeId();
+        return id >= 8 && id <= 11;
+    }
+
+    public boolean breakNaturally()
+    {
+        return world.set(x, y, z, 0, (byte) 0);
+    }
+
+    public Collection<ItemStack> getDrops()
+    {
+        return new ArrayList<ItemStack>();
+    }
+
+    public Collection<ItemStack> getDrops(ItemStack tool)
+    {
+        return new ArrayList<ItemStack>();
+    }
+
+    public Biome getBiome()
+    {
+        return Biome.PLAINS;
+    }
+
+    public byte getLightLevel()
+    {
+        return 15;
+    }
+
+    public boolean isBlockPowered()
+    {
+        return false;
+    }
+
+    public boolean isBlockIndirectlyPowered()
+    {
+        return false;
+    }
+
+    public int getBlockPower()
+    {
+        return 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return "MemoryBlock{world=" + world.getName() + ",x=" + x + ",y=" + y + ",z=" + z + ",type="
+               + getType() + ",data=" + getData() + "}";
+    }
+
+}
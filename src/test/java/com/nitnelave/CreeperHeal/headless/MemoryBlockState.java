@@ -0,0 +1,381 @@
+package com.nitnelave.CreeperHeal.headless;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Note;
+import org.bukkit.SkullType;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Chest;
+import org.bukkit.block.CreatureSpawner;
+import org.bukkit.block.NoteBlock;
+import org.bukkit.block.Sign;
+import org.bukkit.block.Skull;
+import org.bukkit.entity.EntityType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.material.MaterialData;
+
+/**
+ * The state of a block of a memory world, captured when it is created and
+ * written back by update. Like on the server, the states of chests, signs,
+ * skulls, note blocks and spawners implement their interfaces: the lines of a
+ * sign and the skull are copied and written back on update, while the content
+ * of a chest, the note and the spawned creature are read and written directly.
+ * The other blocks holding an inventory (furnaces, dispensers...) are plain
+ * states.
+ *
+ * @author nitnelave
+ *
+ */
+public class MemoryBlockState extends Stub
+{
+
+    private final MemoryWorld world;
+    private final int x, y, z;
+    private int typeId;
+    private byte data;
+    private final String[] lines;
+    private BlockFace rotation;
+    private SkullType skullType;
+    private String owner;
+
+    private MemoryBlockState(MemoryWorld world, int x, int y, int z, Class<?> type)
+    {
+        super(type);
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        typeId = world.getId(x, y, z);
+        data = world.getData(x, y, z);
+        TileData tile = world.getTile(x, y, z, type != BlockState.class);
+        lines = tile == null ? null : tile.lines.clone();
+        if (tile != null)
+        {
+            rotation = tile.rotation;
+            skullType = tile.skullType;
+            owner = tile.owner;
+        }
+    }
+
+    /*
+     * Capture the state of a block, implementing the interface of its type.
+     */
+    static BlockState capture(MemoryWorld world, int x, int y, int z)
+    {
+        Class<?> type = BlockState.class;
+        Material m = Material.getMaterial(world.getId(x, y, z));
+        if (m != null)
+            switch (m)
+            {
+            case CHEST:
+            case TRAPPED_CHEST:
+                type = Chest.class;
+                break;
+            case SIGN_POST:
+            case WALL_SIGN:
+                type = Sign.class;
+                break;
+            case SKULL:
+                type = Skull.class;
+                break;
+            case NOTE_BLOCK:
+                type = NoteBlock.class;
+                break;
+            case MOB_SPAWNER:
+                type = CreatureSpawner.class;
+                break;
+            default:
+            }
+        return new MemoryBlockState(world, x, y, z, type).as(BlockState.class);
+    }
+
+    /*
+     * The extra data of the block in the world, created if needed.
+     */
+    private TileData tile()
+    {
+        return world.getTile(x, y, z, true);
+    }
+
+    /*
+     * Below are the methods of BlockState.
+     */
+
+    public Block getBlock()
+    {
+        return world.getBlockAt(x, y, z);
+    }
+
+    public World getWorld()
+    {
+        return world.as(World.class);
+    }
+
+    public Chunk getChunk()
+    {
+        return world.getChunkAt(x >> 4, z >> 4);
+    }
+
+    public int getX()
+    {
+        return x;
+    }
+
+    public int getY()
+    {
+        return y;
+    }
+
+    public int getZ()
+    {
+        return z;
+    }
+
+    public Location getLocation()
+    {
+        return new Location(getWorld(), x, y, z);
+    }
+
+    public Location getLocation(Location loc)
+    {
+        if (loc != null)
+        {
+            loc.setWorld(getWorld());
+            loc.setX(x);
+            loc.setY(y);
+            loc.setZ(z);
+            loc.setYaw(0);
+            loc.setPitch(0);
+        }
+        return loc;
+    }
+
+    public int getTypeId()
+    {
+        return typeId;
+    }
+
+    public Material getType()
+    {
+        return Material.getMaterial(typeId);
+    }
+
+    public boolean setTypeId(int type)
+    {
+        typeId = type;
+        return true;
+    }
+
+    public void setType(Material type)
+    {
+        typeId = type.getId();
+    }
+
+    public byte getRawData()
+    {
+        return data;
+    }
+
+    public void setRawData(byte data)
+    {
+        this.data = data;
+    }
+
+    public MaterialData getData()
+    {
+        return getType().getNewData(data);
+    }
+
+    public void setData(MaterialData materialData)
+    {
+        data = materialData.getData();
+    }
+
+    public byte getLightLevel()
+    {
+        return 15;
+    }
+
+    public boolean update()
+    {
+        return update(false, true);
+    }
+
+    public boolean update(boolean force)
+    {
+        return update(force, true);
+    }
+
+    public boolean update(boolean force, boolean applyPhysics)
+    {
+        if (world.getId(x, y, z) != typeId && !force)
+            return false;
+        world.set(x, y, z, typeId, data);
+        if (lines != null)
+        {
+            TileData tile = tile();
+            System.arraycopy(lines, 0, tile.lines, 0, lines.length);
+            tile.rotation = rotation;
+            tile.skullType = skullType;
+            tile.owner = owner;
+        }
+        return true;
+    }
+
+    /*
+     * Below are the methods of Sign.
+     */
+
+    public String[] getLines()
+    {
+        return lines;
+    }
+
+    public String getLine(int index)
+    {
+        return lines[index];
+    }
+
+    public void setLine(int index, String line)
+    {
+        lines[index] = line;
+    }
+
+    /*
+     * Below are the methods of Skull.
+     */
+
+    public boolean hasOwner()
+    {
+        return owner != null;
+    }
+
+    public String getOwner()
+    {
+        return owner;
+    }
+
+    public boolean setOwner(String name)
+    {
+        owner = name;
+        return true;
+    }
+
+    public BlockFace getRotation()
+    {
+        return rotation;
+    }
+
+    public void setRotation(BlockFace rotation)
+    {
+        this.rotation = rotation;
+    }
+
+    public SkullType getSkullType()
+    {
+        return skullType;
+    }
+
+    public void setSkullType(SkullType skullType)
+    {
+        this.skullType = skullType;
+    }
+
+    /*
+     * Below are the methods of NoteBlock.
+     */
+
+    public byte getRawNote()
+    {
+        return tile().note;
+    }
+
+    public void setRawNote(byte note)
+    {
+        tile().note = note;
+    }
+
+    public Note getNote()
+    {
+        return new Note(tile().note);
+    }
+
+    public void setNote(Note note)
+    {
+        tile().note = note.getId();
+    }
+
+    /*
+     * Below are the methods of CreatureSpawner.
+     */
+
+    public String getCreatureTypeName()
+    {
+        return tile().creature;
+    }
+
+    public void setCreatureTypeByName(String creature)
+    {
+        tile().creature = creature;
+    }
+
+    public EntityType getSpawnedType()
+    {
+        return EntityType.fromName(tile().creature);
+    }
+
+    public void setSpawnedType(EntityType creature)
+    {
+        tile().creature = creature.getName();
+    }
+
+    public int getDelay()
+    {
+        return tile().delay;
+    }
+
+    public void setDelay(int delay)
+    {
+        tile().delay = delay;
+    }
+
+    /*
+     * Below are the methods of Chest.
+     */
+
+    public Inventory getBlockInventory()
+    {
+        return new MemoryInventory(world, x, y, z, as(Chest.class)).as(Inventory.class);
+    }
+
+    public Inventory getInventory()
+    {
+        Inventory inventory = getBlockInventory();
+        if (world.getId(x - 1, y, z) == typeId)
+            inventory = new MemoryInventory(world, x - 1, y, z, null).doubleWith(inventory, true);
+        if (world.getId(x + 1, y, z) == typeId)
+            inventory = new MemoryInventory(world, x + 1, y, z, null).doubleWith(inventory, false);
+        if (world.getId(x, y, z - 1) == typeId)
+            inventory = new MemoryInventory(world, x, y, z - 1, null).doubleWith(inventory, true);
+        if (world.getId(x, y, z + 1) == typeId)
+            inventory = new MemoryInventory(world, x, y, z + 1, null).doubleWith(inventory, false);
+        return inventory;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return "MemoryBlockState{world=" + world.getName() + ",x=" + x + ",y=" + y + ",z=" + z + ",type="
+               + getType() + ",data=" + data + "}";
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.nitnelave.CreeperHeal.headless;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+
+/**
+ * A chunk of a memory world. It is always loaded, and holds no entity.
+ *
+ * @author nitnelave
+ *
+ */
+public class MemoryChunk extends Stub
+{
+
+    private final MemoryWorld world;
+    private final int x, z;
+
+    MemoryChunk(MemoryWorld world, int x, int z)
+    {
+        super(Chunk.class);
+        this.world = world;
+        this.x = x;
+        this.z = z;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.nitnelave.CreeperHeal.headless.Stub#sameAs(com.nitnelave.CreeperHeal.headless.Stub)
+     */
+    @Override
+    protected boolean sameAs(Stub other)
+    {
+        if (!(other instanceof MemoryChunk))
+            return false;
+        MemoryChunk c = (MemoryChunk) other;
+        return c.world == world && c.x == x && c.z == z;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.nitnelave.CreeperHeal.headless.Stub#hash()
+     */
+    @Override
+    protected int hash()
+    {
+        return 31 * (31 * world.hashCode() + x) + z;
+    }
+
+    /*
+     * Below are the methods of Chunk.
+     */
+
+    public int getX()
+    {
+        return x;
+    }
+
+    public int getZ()
+    {
+        return z;
+    }
+
+    public World getWorld()
+    {
+        return world.as(World.class);
+    }
+
+    public Block getBlock(int bx, int by, int bz)
+    {
+        return world.getBlockAt(x << 4 | bx & 15, by, z << 4 | bz & 15);
+    }
+
+    public boolean isLoaded()
+    {
+        return true;
+    }
+
+    public boolean load()
+    {
+        return true;
+    }
+
+    public boolean load(boolean generate)
+    {
+        return true;
+    }
+
+    public Entity[] getEntities()
+    {
+        return new Entity[0];
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return "MemoryChunk{world=" + world.getName() + ",x=" + x + ",z=" + z + "}";
+    }
+
+}
@@ -0,0 +1,246 @@
+package com.nitnelave.CreeperHeal.headless;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.block.Chest;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.DoubleChestInventory;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * The inventory of a chest of a memory world. It reads and writes the content
+ * stored in the world, so it stays valid while the chest is there. Two
+ * inventories can be joined into the inventory of a double chest.
+ *
+ * @author nitnelave
+ *
+ */
+public class MemoryInventory extends Stub
+{
+
+    private final MemoryWorld world;
+    private final int x, y, z;
+    private final Chest holder;
+
+    MemoryInventory(MemoryWorld world, int x, int y, int z, Chest holder)
+    {
+        super(Inventory.class);
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.holder = holder;
+    }
+
+    /*
+     * The items of the chest, in the world.
+     */
+    private ItemStack[] items()
+    {
+        return world.getTile(x, y, z, true).contents;
+    }
+
+    /*
+     * Join this inventory with another one, into a double chest.
+     */
+    Inventory doubleWith(Inventory other, boolean left)
+    {
+        Inventory self = as(Inventory.class);
+        return new Joined(left ? self : other, left ? other : self).as(Inventory.class);
+    }
+
+    /*
+     * Below are the methods of Inventory.
+     */
+
+    public int getSize()
+    {
+        return TileData.CHEST_SIZE;
+    }
+
+    public int getMaxStackSize()
+    {
+        return 64;
+    }
+
+    public String getName()
+    {
+        return "container.chest";
+    }
+
+    public String getTitle()
+    {
+        return getName();
+    }
+
+    public InventoryType getType()
+    {
+        return InventoryType.CHEST;
+    }
+
+    public InventoryHolder getHolder()
+    {
+        return holder;
+    }
+
+    public List<HumanEntity> getViewers()
+    {
+        return new ArrayList<HumanEntity>();
+    }
+
+    public ItemStack getItem(int index)
+    {
+        ItemStack item = items()[index];
+        return item == null ? null : item.clone();
+    }
+
+    public void setItem(int index, ItemStack item)
+    {
+        items()[index] = item == null ? null : item.clone();
+    }
+
+    public ItemStack[] getContents()
+    {
+        ItemStack[] contents = new ItemStack[getSize()];
+        for (int i = 0; i < contents.length; i++)
+            contents[i] = getItem(i);
+        return contents;
+    }
+
+    public void setContents(ItemStack[] items)
+    {
+        if (items.length > getSize())
+            throw new IllegalArgumentException("Invalid inventory size; expected " + getSize() + " or less");
+        for (int i = 0; i < getSize(); i++)
+            setItem(i, i < items.length ? items[i] : null);
+    }
+
+    public void clear()
+    {
+        for (int i = 0; i < getSize(); i++)
+            setItem(i, null);
+    }
+
+    public void clear(int index)
+    {
+        setItem(index, null);
+    }
+
+    /*
+     * The inventory of a double chest, made of its two sides.
+     */
+    private static class Joined extends Stub
+    {
+        private final Inventory left, right;
+
+        private Joined(Inventory left, Inventory right)
+        {
+            super(DoubleChestInventory.class);
+            this.left = left;
+            this.right = right;
+        }
+
+        /*
+         * Get the side holding a slot.
+         */
+        private Inventory side(int index)
+        {
+            return index < left.getSize() ? left : right;
+        }
+
+        /*
+         * Get the index of a slot in its side.
+         */
+        private int slot(int index)
+        {
+            return index < left.getSize() ? index : index - left.getSize();
+        }
+
+        public Inventory getLeftSide()
+        {
+            return left;
+        }
+
+        public Inventory getRightSide()
+        {
+            return right;
+        }
+
+        public InventoryHolder getHolder()
+        {
+            return null;
+        }
+
+        public int getSize()
+        {
+            return left.getSize() + right.getSize();
+        }
+
+        public int getMaxStackSize()
+        {
+            return 64;
+        }
+
+        public String getName()
+        {
+            return "container.chestDouble";
+        }
+
+        public String getTitle()
+        {
+            return getName();
+        }
+
+        public InventoryType getType()
+        {
+            return InventoryType.CHEST;
+        }
+
+        public List<HumanEntity> getViewers()
+        {
+            return new ArrayList<HumanEntity>();
+        }
+
+        public ItemStack getItem(int index)
+        {
+            return side(index).getItem(slot(index));
+        }
+
+        public void setItem(int index, ItemStack item)
+        {
+            side(index).setItem(slot(index), item);
+        }
+
+        public ItemStack[] getContents()
+        {
+            ItemStack[] contents = new ItemStack[getSize()];
+            for (int i = 0; i < contents.length; i++)
+                contents[i] = getItem(i);
+            return contents;
+        }
+
+        public void setContents(ItemStack[] items)
+        {
+            if (items.length > getSize())
+                throw new IllegalArgumentException("Invalid inventory size; expected " + getSize() + " or less");
+            for (int i = 0; i < getSize(); i++)
+                setItem(i, i < items.length ? items[i] : null);
+        }
+
+        public void clear()
+        {
+            left.clear();
+            right.clear();
+        }
+
+        public void clear(int index)
+        {
+            setItem(index, null);
+        }
+    }
+
+}
@@ -0,0 +1,416 @@
+package com.nitnelave.CreeperHeal.headless;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Sound;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Item;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import com.nitnelave.CreeperHeal.utils.PackedLocation;
+
+/**
+ * A world held in memory. Every block is air until it is set, and the blocks
+ * are stored by chunk section, so that only the sections holding blocks take
+ * memory. There are no entities: spawning one fails, and the items dropped are
+ * only collected, to be checked by the tests. Every chunk is always loaded.
+ *
+ * @author nitnelave
+ *
+ */
+public class MemoryWorld extends Stub
+{
+
+    private static final int MAX_HEIGHT = 256;
+
+    /*
+     * A 16x16x16 section of a chunk.
+     */
+    private static class Section
+    {
+        private final char[] ids = new char[4096];
+        private final byte[] data = new byte[4096];
+        private int count = 0;
+    }
+
+    private final String name;
+    private final UUID uid = UUID.randomUUID();
+    private final Map<Long, Section> sections = new HashMap<Long, Section>();
+    private final Map<Long, TileData> tiles = new HashMap<Long, TileData>();
+    private final Map<Long, MemoryChunk> chunks = new HashMap<Long, MemoryChunk>();
+    private final List<ItemStack> drops = new ArrayList<ItemStack>();
+    private int spawnX = 0, spawnY = 64, spawnZ = 0;
+    private long time = 0;
+
+    MemoryWorld(String name)
+    {
+        super(World.class);
+        this.name = name;
+    }
+
+    /*
+     * The key of the section holding a block.
+     */
+    private static long sectionKey(int x, int y, int z)
+    {
+        return PackedLocation.pack(x >> 4, y >> 4, z >> 4);
+    }
+
+    /*
+     * The index of a block in its section.
+     */
+    private static int index(int x, int y, int z)
+    {
+        return (y & 15) << 8 | (z & 15) << 4 | x & 15;
+    }
+
+    /**
+     * Get the type of a block.
+     *
+     * @param x
+     *            The x coordinate.
+     * @param y
+     *            The y coordinate.
+     * @param z
+     *            The z coordinate.
+     * @return The type id of the block.
+     */
+    public int getId(int x, int y, int z)
+    {
+        if (y < 0 || y >= MAX_HEIGHT)
+            return 0;
+        Section s = sections.get(sectionKey(x, y, z));
+        return s == null ? 0 : s.ids[index(x, y, z)];
+    }
+
+    /**
+     * Get the data of a block.
+     *
+     * @param x
+     *            The x coordinate.
+     * @param y
+     *            The y coordinate.
+     * @param z
+     *            The z coordinate.
+     * @return The data value of the block.
+     */
+    public byte getData(int x, int y, int z)
+    {
+        if (y < 0 || y >= MAX_HEIGHT)
+            return 0;
+        Section s = sections.get(sectionKey(x, y, z));
+        return s == null ? 0 : s.data[index(x, y, z)];
+    }
+
+    /**
+     * Set the type and data of a block. The extra data of the block is
+     * dropped if its type changes. Blocks out of the height of the world are
+     * ignored.
+     *
+     * @param x
+     *            The x coordinate.
+     * @param y
+     *            The y coordinate.
+     * @param z
+     *            The z coordinate.
+     * @param id
+     *            The type id.
+     * @param data
+     *            The data value.
+     * @return True if the block changed.
+     */
+    public boolean set(int x, int y, int z, int id, byte data)
+    {
+        if (y < 0 || y >= MAX_HEIGHT)
+            return false;
+        long key = sectionKey(x, y, z);
+        Section s = sections.get(key);
+        if (s == null)
+        {
+            if (id == 0)
+                return false;
+            s = new Section();
+            sections.put(key, s);
+        }
+        int i = index(x, y, z);
+        int old = s.ids[i];
+        if (old == id && s.data[i] == data)
+            return false;
+        if (old != id)
+        {
+            tiles.remove(PackedLocation.pack(x, y, z));
+            s.count += (id != 0 ? 1 : 0) - (old != 0 ? 1 : 0);
+        }
+        s.ids[i] = (char) id;
+        s.data[i] = data;
+        if (s.count == 0)
+            sections.remove(key);
+        return true;
+    }
+
+    /*
+     * Get the extra data of a block, created if asked.
+     */
+    TileData getTile(int x, int y, int z, boolean create)
+    {
+        long key = PackedLocation.pack(x, y, z);
+        TileData tile = tiles.get(key);
+        if (tile == null && create)
+        {
+            tile = new TileData();
+            tiles.put(key, tile);
+        }
+        return tile;
+    }
+
+    /**
+     * Get the blocks that are not air, for comparisons.
+     *
+     * @return The type id and data of the blocks (id << 4 | data), by packed
+     *         position.
+     */
+    public Map<Long, Integer> getBlocks()
+    {
+        Map<Long, Integer> blocks = new TreeMap<Long, Integer>();
+        for (Map.Entry<Long, Section> e : sections.entrySet())
+        {
+            long key = e.getKey();
+            int bx = PackedLocation.getX(key) << 4, by = PackedLocation.getY(key) << 4,
+                            bz = PackedLocation.getZ(key) << 4;
+            Section s = e.getValue();
+            for (int i = 0; i < 4096; i++)
+                if (s.ids[i] != 0)
+                    blocks.put(PackedLocation.pack(bx + (i & 15), by + (i >> 8), bz + (i >> 4 & 15)),
+                               s.ids[i] << 4 | s.data[i] & 15);
+        }
+        return blocks;
+    }
+
+    /**
+     * Get the items dropped in the world.
+     *
+     * @return The items dropped, in order.
+     */
+    public List<ItemStack> getDroppedItems()
+    {
+        return drops;
+    }
+
+    /**
+     * Set the time of the world.
+     *
+     * @param time
+     *            The time, in ticks.
+     */
+    public void setFullTime(long time)
+    {
+        this.time = time;
+    }
+
+    /**
+     * Set the time of the world.
+     *
+     * @param time
+     *            The time of the day, in ticks.
+     */
+    public void setTime(long time)
+    {
+        this.time = this.time - this.time % 24000 + time;
+    }
+
+    /*
+     * Below are the methods of World.
+     */
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public UUID getUID()
+    {
+        return uid;
+    }
+
+    public World.Environment getEnvironment()
+    {
+        return World.Environment.NORMAL;
+    }
+
+    public int getMaxHeight()
+    {
+        return MAX_HEIGHT;
+    }
+
+    public int getSeaLevel()
+    {
+        return 64;
+    }
+
+    public long getTime()
+    {
+        return time % 24000;
+    }
+
+    public long getFullTime()
+    {
+        return time;
+    }
+
+    public Location getSpawnLocation()
+    {
+        return new Location(as(World.class), spawnX, spawnY, spawnZ);
+    }
+
+    public boolean setSpawnLocation(int x, int y, int z)
+    {
+        spawnX = x;
+        spawnY = y;
+        spawnZ = z;
+        return true;
+    }
+
+    public Block getBlockAt(int x, int y, int z)
+    {
+        return new MemoryBlock(this, x, y, z).as(Block.class);
+    }
+
+    public Block getBlockAt(Location location)
+    {
+        return getBlockAt(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    public int getBlockTypeIdAt(int x, int y, int z)
+    {
+        return getId(x, y, z);
+    }
+
+    public int getBlockTypeIdAt(Location location)
+    {
+        return getId(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    public Chunk getChunkAt(int x, int z)
+    {
+        long key = PackedLocation.pack(x, 0, z);
+        MemoryChunk chunk = chunks.get(key);
+        if (chunk == null)
+        {
+            chunk = new MemoryChunk(this, x, z);
+            chunks.put(key, chunk);
+        }
+        return chunk.as(Chunk.class);
+    }
+
+    public Chunk getChunkAt(Location location)
+    {
+        return getChunkAt(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    public Chunk getChunkAt(Block block)
+    {
+        return getChunkAt(block.getX() >> 4, block.getZ() >> 4);
+    }
+
+    public boolean isChunkLoaded(int x, int z)
+    {
+        return true;
+    }
+
+    public boolean isChunkLoaded(Chunk chunk)
+    {
+        return true;
+    }
+
+    public void loadChunk(int x, int z)
+    {
+        getChunkAt(x, z);
+    }
+
+    public boolean loadChunk(int x, int z, boolean generate)
+    {
+        getChunkAt(x, z);
+        return true;
+    }
+
+    public void loadChunk(Chunk chunk)
+    {}
+
+    public Chunk[] getLoadedChunks()
+    {
+        List<Chunk> loaded = new ArrayList<Chunk>();
+        for (MemoryChunk c : chunks.values())
+            loaded.add(c.as(Chunk.class));
+        return loaded.toArray(new Chunk[loaded.size()]);
+    }
+
+    public List<Player> getPlayers()
+    {
+        return Collections.emptyList();
+    }
+
+    public List<Entity> getEntities()
+    {
+        return Collections.emptyList();
+    }
+
+    public List<LivingEntity> getLivingEntities()
+    {
+        return Collections.emptyList();
+    }
+
+    public <T extends Entity> Collection<T> getEntitiesByClass(Class<T> cls)
+    {
+        return Collections.emptyList();
+    }
+
+    public Collection<Entity> getEntitiesByClasses(Class<?>... classes)
+    {
+        return Collections.emptyList();
+    }
+
+    public <T extends Entity> T spawn(Location location, Class<T> cls)
+    {
+        throw new IllegalArgumentException("Memory worlds have no entities");
+    }
+
+    public Item dropItem(Location location, ItemStack item)
+    {
+        drops.add(item);
+        return null;
+    }
+
+    public Item dropItemNaturally(Location location, ItemStack item)
+    {
+        drops.add(item);
+        return null;
+    }
+
+    public void playSound(Location location, Sound sound, float volume, float pitch)
+    {}
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return "MemoryWorld{name=" + name + "}";
+    }
+
+}
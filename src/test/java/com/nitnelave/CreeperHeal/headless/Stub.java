@@ -0,0 +1,160 @@
+package com.nitnelave.CreeperHeal.headless;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Base of the in-memory stand-ins of the Bukkit interfaces. A stub is the
+ * handler of a proxy implementing the interfaces: every call on the proxy is
+ * forwarded to the public method of the stub with the same name and
+ * parameters. The methods a stub does not implement throw an
+ * UnsupportedOperationException, so that a test relying on them fails
+ * loudly instead of reading a default value.
+ *
+ * @author nitnelave
+ *
+ */
+public abstract class Stub implements InvocationHandler
+{
+
+    /*
+     * The implementations of the interface methods, by stub class.
+     */
+    private static final Map<Class<?>, Map<Method, Method>> implementations = new HashMap<Class<?>, Map<Method, Method>>();
+
+    private final Object proxy;
+
+    /**
+     * Create the stub, and the proxy implementing the interfaces.
+     *
+     * @param interfaces
+     *            The interfaces implemented by the proxy.
+     */
+    protected Stub(Class<?>... interfaces)
+    {
+        proxy = Proxy.newProxyInstance(Stub.class.getClassLoader(), interfaces, this);
+    }
+
+    /**
+     * Get the proxy as one of its interfaces.
+     *
+     * @param type
+     *            The interface.
+     * @return The proxy.
+     */
+    public <T> T as(Class<T> type)
+    {
+        return type.cast(proxy);
+    }
+
+    /**
+     * Get the stub behind a proxy.
+     *
+     * @param proxy
+     *            The proxy.
+     * @param type
+     *            The class of the stub.
+     * @return The stub, or null if the object is not a proxy of this type of
+     *         stub.
+     */
+    public static <T extends Stub> T of(Object proxy, Class<T> type)
+    {
+        if (proxy == null || !Proxy.isProxyClass(proxy.getClass()))
+            return null;
+        InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+        return type.isInstance(handler) ? type.cast(handler) : null;
+    }
+
+    /**
+     * Whether the stub stands for the same object as another one. By
+     * default, stubs are only equal to themselves.
+     *
+     * @param other
+     *            The other stub.
+     * @return True if both stand for the same object.
+     */
+    protected boolean sameAs(Stub other)
+    {
+        return other == this;
+    }
+
+    /**
+     * The hash code of the proxy, consistent with sameAs.
+     *
+     * @return The hash code.
+     */
+    protected int hash()
+    {
+        return System.identityHashCode(this);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object,
+     * java.lang.reflect.Method, java.lang.Object[])
+     */
+    @Override
+    public Object invoke(Object self, Method method, Object[] args) throws Throwable
+    {
+        if (method.getDeclaringClass() == Object.class)
+        {
+            String name = method.getName();
+            if (name.equals("equals"))
+            {
+                Stub other = of(args[0], Stub.class);
+                return other != null && sameAs(other);
+            }
+            if (name.equals("hashCode"))
+                return hash();
+            return toString();
+        }
+        Method impl = implementation(method);
+        if (impl == null)
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " does not implement "
+                                                    + method.getDeclaringClass().getSimpleName() + "."
+                                                    + method.getName());
+        try
+        {
+            return impl.invoke(this, args);
+        } catch (InvocationTargetException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /*
+     * Find the method of the stub implementing the interface method, null if
+     * there is none.
+     */
+    private Method implementation(Method method)
+    {
+        synchronized (implementations)
+        {
+            Map<Method, Method> methods = implementations.get(getClass());
+            if (methods == null)
+            {
+                methods = new HashMap<Method, Method>();
+                implementations.put(getClass(), methods);
+            }
+            if (methods.containsKey(method))
+                return methods.get(method);
+            Method impl = null;
+            try
+            {
+                impl = getClass().getMethod(method.getName(), method.getParameterTypes());
+                impl.setAccessible(true);
+            } catch (NoSuchMethodException e)
+            {
+                //not implemented.
+            }
+            methods.put(method, impl);
+            return impl;
+        }
+    }
+
+}
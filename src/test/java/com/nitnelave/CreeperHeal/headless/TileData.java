@@ -0,0 +1,29 @@
+package com.nitnelave.CreeperHeal.headless;
+
+import org.bukkit.SkullType;
+import org.bukkit.block.BlockFace;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * The extra data of a block of a memory world, like a tile entity: the
+ * content of a chest, the lines of a sign, the skull, the note or the
+ * spawner. It is dropped when the type of the block changes.
+ *
+ * @author nitnelave
+ *
+ */
+class TileData
+{
+
+    static final int CHEST_SIZE = 27;
+
+    final ItemStack[] contents = new ItemStack[CHEST_SIZE];
+    final String[] lines = {"", "", "", ""};
+    BlockFace rotation = BlockFace.NORTH;
+    SkullType skullType = SkullType.SKELETON;
+    String owner = null;
+    byte note = 0;
+    String creature = "Pig";
+    int delay = 20;
+
+}